@@ -2,25 +2,34 @@ package org.colomoto.function;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.util.BitSet;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.AbstractListModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
-import javax.swing.JTextArea;
+import javax.swing.JScrollPane;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 
-import org.colomoto.function.core.Clause;
 import org.colomoto.function.core.Formula;
+import org.colomoto.function.core.FormulaParser;
 import org.colomoto.function.core.HasseDiagram;
 
 /**
@@ -34,6 +43,8 @@ import org.colomoto.function.core.HasseDiagram;
  */
 public class GetFunctionNeighbours extends JFrame {
 	private static final long serialVersionUID = -2458646831659346077L;
+	// rows measured per published chunk to size the list cells
+	private static final int WIDTH_SAMPLES = 8;
 
 	private JTextField jtfDim;
 	private JTextField jtfFunction;
@@ -41,7 +52,13 @@ public class GetFunctionNeighbours extends JFrame {
 	private JCheckBox jcbSiblings;
 	private JCheckBox jcbChildren;
 	private JCheckBox jcbDegen;
-	private JTextArea jtarea;
+	private JButton jbRun;
+	private JButton jbCancel;
+	private JList<Object> jlist;
+	private ResultListModel results;
+	private JLabel jlStatus;
+	private Timer timer;
+	private NeighboursWorker worker;
 
 	public GetFunctionNeighbours() {
 		this.setTitle("Function Direct Neighbours - GUI");
@@ -104,69 +121,46 @@ public class GetFunctionNeighbours extends JFrame {
 		gbc.fill = GridBagConstraints.HORIZONTAL;
 		gbc.gridx = 0;
 		gbc.gridy = y;
-		JButton jbRun = new JButton("Run");
-		jbRun.addActionListener(new ActionListener() {
+		this.jbRun = new JButton("Run");
+		this.jbRun.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				jtarea.setText("");
-				int nsize = Integer.parseInt(jtfDim.getText().trim());
-				Formula f;
-				try {
-					f = parseFormula(nsize, jtfFunction.getText().trim());
-					jtfFunction.setBackground(Color.WHITE);
-				} catch (NumberFormatException nfe) {
-					jtfFunction.setBackground(Color.RED);
-					return;
-				}
-				HasseDiagram hd = new HasseDiagram(nsize);
-
-				Set<Formula> sParents;
-				if (jcbParents.isSelected() || jcbSiblings.isSelected()) {
-					sParents = hd.getFormulaParents(f, jcbDegen.isSelected());
-				} else {
-					sParents = new HashSet<Formula>();
-				}
-				Set<Formula> sChildren;
-				if (jcbChildren.isSelected() || jcbSiblings.isSelected()) {
-					sChildren = hd.getFormulaChildren(f, jcbDegen.isSelected());
-				} else {
-					sChildren = new HashSet<Formula>();
-				}
-
-				if (jcbParents.isSelected()) {
-					jtarea.append("------------------ Parents ------------------\n");
-					for (Formula parent : sParents) {
-						jtarea.append(parent.toString() + "\n");
-					}
-				}
-				if (jcbSiblings.isSelected()) {
-					Set<Formula> sSiblings = new HashSet<Formula>();
-					jtarea.append("------------------ Siblings ------------------\n");
-					for (Formula child : sChildren) {
-						sSiblings.addAll(hd.getFormulaParents(child, jcbDegen.isSelected()));
-					}
-					for (Formula parent : sParents) {
-						sSiblings.addAll(hd.getFormulaChildren(parent, jcbDegen.isSelected()));
-					}
-					sSiblings.remove(f);
-					for (Formula brother : sSiblings) {
-						jtarea.append(brother.toString() + "\n");
-					}
-				}
-				if (jcbChildren.isSelected()) {
-					jtarea.append("------------------ Children ------------------\n");
-					for (Formula child : sChildren) {
-						jtarea.append(child.toString() + "\n");
-					}
+				run();
+			}
+		});
+		top.add(this.jbRun, gbc);
+		gbc.fill = GridBagConstraints.NONE;
+		gbc.anchor = GridBagConstraints.LINE_START;
+		gbc.gridx = 1;
+		this.jbCancel = new JButton("Cancel");
+		this.jbCancel.setEnabled(false);
+		this.jbCancel.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (worker != null) {
+					worker.cancel(true);
 				}
 			}
 		});
-		top.add(jbRun, gbc);
+		top.add(this.jbCancel, gbc);
 
 		add(top, BorderLayout.PAGE_START);
 
-		this.jtarea = new JTextArea("");
-		add(this.jtarea, BorderLayout.CENTER);
+		this.results = new ResultListModel();
+		this.jlist = new JList<Object>(this.results);
+		this.jlist.setFixedCellHeight(this.jlist.getFontMetrics(this.jlist.getFont()).getHeight());
+		this.jlist.setFixedCellWidth(1);
+		add(new JScrollPane(this.jlist), BorderLayout.CENTER);
+
+		this.jlStatus = new JLabel(" ");
+		add(this.jlStatus, BorderLayout.PAGE_END);
+
+		this.timer = new Timer(200, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				updateStatus(null);
+			}
+		});
 
 		setSize(500, 500);
 		setLocationRelativeTo(null);
@@ -174,25 +168,233 @@ public class GetFunctionNeighbours extends JFrame {
 		setVisible(true);
 	}
 
-	private static Clause parseClause(int n, String s) throws NumberFormatException {
-		s = s.substring(1, s.length() - 1);
-		BitSet bs = new BitSet(n);
-		for (String r : s.split(",")) {
-			bs.set(Integer.parseInt(r) - 1, true);
+	/**
+	 * Parses the input and starts computing the neighbours in the background.
+	 */
+	private void run() {
+		int nsize;
+		try {
+			nsize = Integer.parseInt(this.jtfDim.getText().trim());
+			this.jtfDim.setBackground(Color.WHITE);
+		} catch (NumberFormatException nfe) {
+			this.jtfDim.setBackground(Color.RED);
+			return;
+		}
+		Formula f;
+		try {
+			f = FormulaParser.parseFormula(nsize, this.jtfFunction.getText());
+			this.jtfFunction.setBackground(Color.WHITE);
+			this.jtfFunction.setToolTipText(null);
+		} catch (ParseException pe) {
+			this.jtfFunction.setBackground(Color.RED);
+			this.jtfFunction.setToolTipText(pe.getMessage());
+			this.jtfFunction.setCaretPosition(pe.getErrorOffset());
+			return;
+		}
+		this.results.clear();
+		this.jlist.setFixedCellWidth(1);
+		this.jbRun.setEnabled(false);
+		this.jbCancel.setEnabled(true);
+		this.worker = new NeighboursWorker(nsize, f, this.jcbParents.isSelected(), this.jcbSiblings.isSelected(),
+				this.jcbChildren.isSelected(), this.jcbDegen.isSelected());
+		this.worker.execute();
+		this.timer.start();
+	}
+
+	private void updateStatus(String state) {
+		if (this.worker == null)
+			return;
+		String s = String.format("Parents: %d   Siblings: %d   Children: %d   Time: %.1fs",
+				this.results.getCount(Section.PARENTS), this.results.getCount(Section.SIBLINGS),
+				this.results.getCount(Section.CHILDREN), this.worker.getElapsed() / 1000.0);
+		this.jlStatus.setText(state == null ? s : s + "   (" + state + ")");
+	}
+
+	private enum Section {
+		PARENTS("Parents"), SIBLINGS("Siblings"), CHILDREN("Children");
+
+		private String header;
+
+		private Section(String name) {
+			this.header = "------------------ " + name + " ------------------";
+		}
+
+		public String toString() {
+			return this.header;
+		}
+	}
+
+	/**
+	 * List model holding the section headers and the resulting formulas. Only
+	 * the rows being displayed are ever converted to text by the JList.
+	 */
+	private static class ResultListModel extends AbstractListModel<Object> {
+		private static final long serialVersionUID = 2811389563367036524L;
+
+		private List<Object> lRows = new ArrayList<Object>();
+		private int[] counts = new int[Section.values().length];
+		private Section current;
+
+		public void clear() {
+			int size = this.lRows.size();
+			this.lRows.clear();
+			Arrays.fill(this.counts, 0);
+			this.current = null;
+			if (size > 0) {
+				this.fireIntervalRemoved(this, 0, size - 1);
+			}
+		}
+
+		public void addAll(List<Object> lChunk) {
+			int first = this.lRows.size();
+			for (Object o : lChunk) {
+				if (o instanceof Section) {
+					this.current = (Section) o;
+				} else {
+					this.counts[this.current.ordinal()]++;
+				}
+				this.lRows.add(o);
+			}
+			if (!lChunk.isEmpty()) {
+				this.fireIntervalAdded(this, first, this.lRows.size() - 1);
+			}
+		}
+
+		public int getCount(Section s) {
+			return this.counts[s.ordinal()];
+		}
+
+		@Override
+		public int getSize() {
+			return this.lRows.size();
+		}
+
+		@Override
+		public Object getElementAt(int index) {
+			return this.lRows.get(index);
 		}
-		return new Clause(n, bs);
 	}
 
-	private static Formula parseFormula(int n, String s) throws NumberFormatException {
-		s = s.substring(1, s.length() - 1);
-		Set<Clause> fClauses = new HashSet<Clause>();
-		for (String clause : s.split("},")) {
-			if (clause.charAt(clause.length() - 1) != '}') {
-				clause = clause + "}";
+	/**
+	 * Computes the neighbours of a formula outside of the event dispatch thread,
+	 * publishing each section header and formula as soon as it is known. The
+	 * computation stops between two neighbour computations once cancelled.
+	 */
+	private class NeighboursWorker extends SwingWorker<Void, Object> {
+		private int nsize;
+		private Formula f;
+		private boolean parents;
+		private boolean siblings;
+		private boolean children;
+		private boolean degenerated;
+		private long start;
+		private long end;
+
+		public NeighboursWorker(int nsize, Formula f, boolean parents, boolean siblings, boolean children,
+				boolean degenerated) {
+			this.nsize = nsize;
+			this.f = f;
+			this.parents = parents;
+			this.siblings = siblings;
+			this.children = children;
+			this.degenerated = degenerated;
+			this.start = System.currentTimeMillis();
+		}
+
+		public long getElapsed() {
+			return (this.end == 0 ? System.currentTimeMillis() : this.end) - this.start;
+		}
+
+		@Override
+		protected Void doInBackground() {
+			HasseDiagram hd = new HasseDiagram(this.nsize);
+
+			Set<Formula> sParents = new HashSet<Formula>();
+			if (this.parents || this.siblings) {
+				sParents = hd.getFormulaParents(this.f, this.degenerated);
+			}
+			if (this.parents) {
+				this.publish(Section.PARENTS);
+				this.publishAll(sParents);
+			}
+			if (this.isCancelled())
+				return null;
+			Set<Formula> sChildren = new HashSet<Formula>();
+			if (this.children || this.siblings) {
+				sChildren = hd.getFormulaChildren(this.f, this.degenerated);
+			}
+			if (this.siblings) {
+				this.publish(Section.SIBLINGS);
+				Set<Formula> sSiblings = new HashSet<Formula>();
+				sSiblings.add(this.f);
+				for (Formula child : sChildren) {
+					if (this.isCancelled())
+						return null;
+					this.publishNew(sSiblings, hd.getFormulaParents(child, this.degenerated));
+				}
+				for (Formula parent : sParents) {
+					if (this.isCancelled())
+						return null;
+					this.publishNew(sSiblings, hd.getFormulaChildren(parent, this.degenerated));
+				}
+			}
+			if (this.children) {
+				this.publish(Section.CHILDREN);
+				this.publishAll(sChildren);
+			}
+			return null;
+		}
+
+		private void publishAll(Set<Formula> sFormulas) {
+			for (Formula fi : sFormulas) {
+				this.publish(fi);
+			}
+		}
+
+		private void publishNew(Set<Formula> sSeen, Set<Formula> sFormulas) {
+			for (Formula fi : sFormulas) {
+				if (sSeen.add(fi)) {
+					this.publish(fi);
+				}
+			}
+		}
+
+		@Override
+		protected void process(List<Object> lChunk) {
+			if (this.isCancelled())
+				return;
+			// widest of a few rows of the chunk, so that neither the list nor this
+			// method convert every row to text
+			FontMetrics fm = jlist.getFontMetrics(jlist.getFont());
+			int width = jlist.getFixedCellWidth();
+			int step = Math.max(1, lChunk.size() / WIDTH_SAMPLES);
+			for (int i = 0; i < lChunk.size(); i += step) {
+				width = Math.max(width, fm.stringWidth(lChunk.get(i).toString()) + 10);
+			}
+			jlist.setFixedCellWidth(width);
+			results.addAll(lChunk);
+			updateStatus(null);
+		}
+
+		@Override
+		protected void done() {
+			this.end = System.currentTimeMillis();
+			timer.stop();
+			jbRun.setEnabled(true);
+			jbCancel.setEnabled(false);
+			if (this.isCancelled()) {
+				updateStatus("cancelled");
+				return;
+			}
+			try {
+				this.get();
+				updateStatus("done");
+			} catch (InterruptedException e) {
+				updateStatus("interrupted");
+			} catch (ExecutionException e) {
+				updateStatus("error: " + e.getCause());
 			}
-			fClauses.add(parseClause(n, clause));
 		}
-		return new Formula(n, fClauses);
 	}
 
 	public static void main(String[] args) throws IOException {
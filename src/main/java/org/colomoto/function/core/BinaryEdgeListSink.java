@@ -0,0 +1,63 @@
+package org.colomoto.function.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a Hasse sub-diagram as a compact binary list of nodes and edges, where
+ * each formula is given by its encoding (see {@link FormulaCodec}), which is
+ * also a unique node identifier. All values are big-endian.
+ *
+ * The header holds the magic number "FHEL", the format version, the number of
+ * variables and the number of longs of each formula. Each record is then
+ * either a 0 byte followed by a formula (node), or a 1 byte followed by the
+ * smaller and then the larger formula (edge).
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class BinaryEdgeListSink extends ChannelGraphSink {
+	public static final int MAGIC = 0x4648454C; // "FHEL"
+	public static final int VERSION = 1;
+	public static final byte NODE = 0;
+	public static final byte EDGE = 1;
+
+	private FormulaCodec codec;
+	private long[] key;
+
+	public BinaryEdgeListSink(File file, int nvars) throws IOException {
+		this(open(file), nvars);
+	}
+
+	public BinaryEdgeListSink(WritableByteChannel channel, int nvars) throws IOException {
+		super(channel);
+		this.codec = new FormulaCodec(nvars);
+		this.key = this.codec.newKey();
+		this.writeInt(MAGIC);
+		this.writeInt(VERSION);
+		this.writeInt(nvars);
+		this.writeInt(this.codec.getWords());
+	}
+
+	@Override
+	public void node(Formula f) throws IOException {
+		this.writeByte(NODE);
+		this.writeKey(f);
+	}
+
+	@Override
+	public void edge(Formula fLower, Formula fUpper) throws IOException {
+		this.writeByte(EDGE);
+		this.writeKey(fLower);
+		this.writeKey(fUpper);
+	}
+
+	private void writeKey(Formula f) throws IOException {
+		this.codec.encode(f, this.key);
+		for (long l : this.key) {
+			this.writeLong(l);
+		}
+	}
+}
@@ -0,0 +1,284 @@
+package org.colomoto.function.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Search of the candidate subsets of the 2nd rule of
+ * HasseDiagram.getFormulaParents. Adding a set S of candidate clauses to a
+ * formula F (removing the clauses of F directly dominating them) yields a
+ * parent of F iff the resulting formula is consistent and no proper subset of
+ * S already yields a consistent formula (which would be in between).
+ *
+ * Subsets are enumerated depth-first, by increasing candidate index, updating
+ * the number of dependent clause pairs and of uncovered variables as each
+ * candidate is added or removed. A branch is pruned as soon as its subset is
+ * consistent (its supersets are not minimal), or when it has a dependent pair
+ * or an uncovered variable that no later candidate can fix. First-level
+ * branches are searched in parallel when there are enough candidates.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class CandidateSearch {
+	private static final int PARALLEL_THRESHOLD = 8;
+	private static final SharedExecutor executor = new SharedExecutor("CandidateSearch");
+
+	private int nvars;
+	// the clauses of F in [0, nf), followed by the candidates
+	private Clause[] items;
+	private int nf;
+	private int nc;
+	private boolean[][] dependent;
+	private int[][] vars;
+	// clauses of F removed by each candidate
+	private int[][] removes;
+	// highest candidate removing each clause of F, -1 if none
+	private int[] lastRemover;
+	// variables of the candidates from a given index onwards
+	private BitSet[] laterVars;
+
+	public CandidateSearch(int nvars, Set<Clause> sfClauses, List<Clause> lCandidates) {
+		this.nvars = nvars;
+		this.nf = sfClauses.size();
+		this.nc = lCandidates.size();
+		int m = this.nf + this.nc;
+		this.items = new Clause[m];
+		int i = 0;
+		for (Clause c : sfClauses) {
+			this.items[i++] = c;
+		}
+		for (Clause c : lCandidates) {
+			this.items[i++] = c;
+		}
+
+		this.dependent = new boolean[m][m];
+		this.vars = new int[m][];
+		for (int x = 0; x < m; x++) {
+			for (int y = x + 1; y < m; y++) {
+				this.dependent[x][y] = this.dependent[y][x] = !this.items[x].isIndependent(this.items[y]);
+			}
+			this.vars[x] = new int[this.items[x].order()];
+			int k = 0;
+			for (int v = this.items[x].nextVariable(0); v >= 0; v = this.items[x].nextVariable(v + 1)) {
+				this.vars[x][k++] = v;
+			}
+		}
+
+		this.removes = new int[this.nc][];
+		this.lastRemover = new int[this.nf];
+		for (int d = 0; d < this.nf; d++) {
+			this.lastRemover[d] = -1;
+		}
+		for (int k = 0; k < this.nc; k++) {
+			Clause c = this.items[this.nf + k];
+			List<Integer> lRemoved = new ArrayList<Integer>();
+			for (int d = 0; d < this.nf; d++) {
+				if (this.items[d].order() == c.order() + 1 && this.items[d].dominatesOrEqualTo(c)) {
+					lRemoved.add(d);
+					this.lastRemover[d] = k;
+				}
+			}
+			this.removes[k] = new int[lRemoved.size()];
+			for (int j = 0; j < lRemoved.size(); j++) {
+				this.removes[k][j] = lRemoved.get(j);
+			}
+		}
+
+		this.laterVars = new BitSet[this.nc + 1];
+		this.laterVars[this.nc] = new BitSet(nvars);
+		for (int k = this.nc - 1; k >= 0; k--) {
+			this.laterVars[k] = (BitSet) this.laterVars[k + 1].clone();
+			this.items[this.nf + k].addVariablesTo(this.laterVars[k]);
+		}
+	}
+
+	/**
+	 * @return the clauses of the formulas given by each minimal consistent
+	 *         subset of candidates
+	 */
+	public Set<Set<Clause>> search() {
+		List<BitSet> lFound = new ArrayList<BitSet>();
+		if (this.nc < PARALLEL_THRESHOLD) {
+			for (int k = 0; k < this.nc; k++) {
+				lFound.addAll(new Branch(k).search());
+			}
+		} else {
+			List<Future<List<BitSet>>> lFutures = new ArrayList<Future<List<BitSet>>>();
+			for (int k = 0; k < this.nc; k++) {
+				final Branch b = new Branch(k);
+				lFutures.add(executor.get().submit(new Callable<List<BitSet>>() {
+					@Override
+					public List<BitSet> call() {
+						return b.search();
+					}
+				}));
+			}
+			for (List<BitSet> lBranchFound : SharedExecutor.getAll(lFutures, "candidate search")) {
+				lFound.addAll(lBranchFound);
+			}
+		}
+
+		Set<Set<Clause>> sFormulas = new HashSet<Set<Clause>>();
+		for (BitSet s : lFound) {
+			if (this.isMinimal(s, lFound)) {
+				sFormulas.add(this.toClauses(s));
+			}
+		}
+		return sFormulas;
+	}
+
+	/**
+	 * Only the prefixes of a subset are checked during the search, so a found
+	 * subset may still contain another found subset.
+	 */
+	private boolean isMinimal(BitSet s, List<BitSet> lFound) {
+		for (BitSet t : lFound) {
+			if (t != s && t.cardinality() < s.cardinality()) {
+				BitSet diff = (BitSet) t.clone();
+				diff.andNot(s);
+				if (diff.isEmpty())
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private Set<Clause> toClauses(BitSet s) {
+		Set<Clause> sClauses = new HashSet<Clause>();
+		for (int d = 0; d < this.nf; d++) {
+			boolean bRemoved = false;
+			for (int k = s.nextSetBit(0); k >= 0 && !bRemoved; k = s.nextSetBit(k + 1)) {
+				for (int r : this.removes[k]) {
+					if (r == d)
+						bRemoved = true;
+				}
+			}
+			if (!bRemoved)
+				sClauses.add(this.items[d]);
+		}
+		for (int k = s.nextSetBit(0); k >= 0; k = s.nextSetBit(k + 1)) {
+			sClauses.add(this.items[this.nf + k]);
+		}
+		return sClauses;
+	}
+
+	/**
+	 * Search state of the subsets starting with a given candidate.
+	 */
+	private class Branch {
+		private int first;
+		private boolean[] present;
+		private int[] removedCount;
+		private int[] varCount;
+		private int uncovered;
+		private int violations;
+		private BitSet chosen;
+		private List<BitSet> lFound;
+
+		public Branch(int first) {
+			this.first = first;
+		}
+
+		public List<BitSet> search() {
+			this.present = new boolean[nf + nc];
+			this.removedCount = new int[nf];
+			this.varCount = new int[nvars];
+			this.uncovered = nvars;
+			this.violations = 0;
+			this.chosen = new BitSet(nc);
+			this.lFound = new ArrayList<BitSet>();
+			for (int d = 0; d < nf; d++) {
+				this.addItem(d);
+			}
+			this.visit(this.first);
+			return this.lFound;
+		}
+
+		private void visit(int k) {
+			// a cancelled search abandons its branches
+			if (Thread.currentThread().isInterrupted()) {
+				throw new IllegalStateException("Interrupted candidate search");
+			}
+			this.addCandidate(k);
+			if (this.violations == 0 && this.uncovered == 0) {
+				this.lFound.add((BitSet) this.chosen.clone());
+			} else if (!this.isHopeless(k + 1)) {
+				for (int next = k + 1; next < nc; next++) {
+					this.visit(next);
+				}
+			}
+			this.removeCandidate(k);
+		}
+
+		private boolean isHopeless(int next) {
+			for (int v = 0; v < nvars; v++) {
+				if (this.varCount[v] == 0 && !laterVars[next].get(v))
+					return true;
+			}
+			if (this.violations > 0) {
+				for (int x = 0; x < nf + nc; x++) {
+					if (!this.present[x] || this.isRemovable(x, next))
+						continue;
+					for (int y = x + 1; y < nf + nc; y++) {
+						if (this.present[y] && dependent[x][y] && !this.isRemovable(y, next))
+							return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private boolean isRemovable(int x, int next) {
+			return x < nf && lastRemover[x] >= next;
+		}
+
+		private void addCandidate(int k) {
+			this.chosen.set(k);
+			for (int d : removes[k]) {
+				if (this.removedCount[d]++ == 0)
+					this.removeItem(d);
+			}
+			this.addItem(nf + k);
+		}
+
+		private void removeCandidate(int k) {
+			this.removeItem(nf + k);
+			for (int d : removes[k]) {
+				if (--this.removedCount[d] == 0)
+					this.addItem(d);
+			}
+			this.chosen.clear(k);
+		}
+
+		private void addItem(int x) {
+			for (int y = 0; y < nf + nc; y++) {
+				if (this.present[y] && dependent[x][y])
+					this.violations++;
+			}
+			this.present[x] = true;
+			for (int v : vars[x]) {
+				if (this.varCount[v]++ == 0)
+					this.uncovered--;
+			}
+		}
+
+		private void removeItem(int x) {
+			this.present[x] = false;
+			for (int y = 0; y < nf + nc; y++) {
+				if (this.present[y] && dependent[x][y])
+					this.violations--;
+			}
+			for (int v : vars[x]) {
+				if (--this.varCount[v] == 0)
+					this.uncovered++;
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package org.colomoto.function.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Base of the graph writers, buffering their output in a direct byte buffer
+ * that is drained to a channel whenever full. Text is written as ASCII, which
+ * is enough for formulas.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+abstract class ChannelGraphSink implements HasseGraphSink {
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private WritableByteChannel channel;
+	private ByteBuffer buffer;
+	private StringBuilder sb;
+
+	protected ChannelGraphSink(WritableByteChannel channel) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+		this.sb = new StringBuilder();
+	}
+
+	protected static WritableByteChannel open(File file) throws IOException {
+		return new FileOutputStream(file).getChannel();
+	}
+
+	protected void write(CharSequence s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			if (!this.buffer.hasRemaining())
+				this.drain();
+			this.buffer.put((byte) s.charAt(i));
+		}
+	}
+
+	/**
+	 * Writes a formula in the format of {@link FormulaWriter}.
+	 *
+	 * @param f
+	 * @throws IOException
+	 */
+	protected void write(Formula f) throws IOException {
+		this.sb.setLength(0);
+		this.write(FormulaWriter.append(this.sb, f));
+	}
+
+	protected void writeByte(int b) throws IOException {
+		if (!this.buffer.hasRemaining())
+			this.drain();
+		this.buffer.put((byte) b);
+	}
+
+	protected void writeInt(int i) throws IOException {
+		if (this.buffer.remaining() < 4)
+			this.drain();
+		this.buffer.putInt(i);
+	}
+
+	protected void writeLong(long l) throws IOException {
+		if (this.buffer.remaining() < 8)
+			this.drain();
+		this.buffer.putLong(l);
+	}
+
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.drain();
+		} finally {
+			this.channel.close();
+		}
+	}
+}
@@ -1,59 +1,238 @@
 package org.colomoto.function.core;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Clause is represented as a bit vector (true/false) of size n. By default all
  * bits are set to true (representing a more specific clause). Clauses can be
  * compared against other clauses.
  * 
+ * Clauses with few variables set, compared to n, are instead represented by
+ * the sorted array of their variables, so that comparisons only depend on the
+ * number of variables in the clauses, not on n. The representation is chosen
+ * automatically from the density, and is thus the same for equal clauses.
+ * 
+ * Clauses can be interned (see intern), so that a single instance of each
+ * distinct clause is kept per dimension. Two interned clauses are equal iff
+ * they are the same instance.
+ * 
  * @author Pedro T. Monteiro
  * @author Jose' R. Cury
  * @author Claudine Chaouiya
  * 
  */
 public class Clause {
+	// sparse if less than 1 out of SPARSE_RATIO variables is set
+	private static final int SPARSE_RATIO = 8;
+	private static final ConcurrentMap<Integer, Interner<Clause>> interners = new ConcurrentHashMap<Integer, Interner<Clause>>();
+
 	private int size;
 	private BitSet signature;
+	private int[] vars;
+	private boolean interned;
 
 	public Clause(int nvars, BitSet signature) {
 		this.size = nvars;
-		this.signature = signature;
+		int order = signature.cardinality();
+		if (isSparse(nvars, order)) {
+			this.vars = new int[order];
+			int k = 0;
+			for (int i = signature.nextSetBit(0); i >= 0; i = signature.nextSetBit(i + 1)) {
+				this.vars[k++] = i;
+			}
+		} else {
+			this.signature = signature;
+		}
+	}
+
+	/**
+	 * Creates a clause from its sorted (without repetitions) variables.
+	 * 
+	 * @param nvars
+	 * @param vars
+	 */
+	public Clause(int nvars, int[] vars) {
+		this.size = nvars;
+		if (isSparse(nvars, vars.length)) {
+			this.vars = vars;
+		} else {
+			this.signature = new BitSet(nvars);
+			for (int v : vars) {
+				this.signature.set(v);
+			}
+		}
 	}
 
 	public Clause(int nvars) {
-		this(nvars, new BitSet(nvars));
-		this.signature.set(0, nvars, true);
+		this(nvars, fullSignature(nvars));
+	}
+
+	private static BitSet fullSignature(int nvars) {
+		BitSet bs = new BitSet(nvars);
+		bs.set(0, nvars, true);
+		return bs;
 	}
 
+	private static boolean isSparse(int nvars, int order) {
+		return order * SPARSE_RATIO < nvars;
+	}
+
+	/**
+	 * @return true if the clause is represented by the array of its variables
+	 */
+	boolean isSparse() {
+		return this.vars != null;
+	}
+
+	/**
+	 * Returns the clause as a bit vector. For sparse clauses, a new bit vector is
+	 * built at each call, so nextVariable or addVariablesTo should be preferred.
+	 * 
+	 * @return
+	 */
 	public BitSet getSignature() {
-		return this.signature;
+		if (this.vars == null) {
+			return this.signature;
+		}
+		BitSet bs = new BitSet(this.size);
+		this.addVariablesTo(bs);
+		return bs;
+	}
+
+	/**
+	 * Returns the first variable of the clause at or after the given position,
+	 * as BitSet.nextSetBit.
+	 * 
+	 * @param from
+	 * @return the variable, or -1 if none
+	 */
+	public int nextVariable(int from) {
+		if (this.vars == null) {
+			return this.signature.nextSetBit(from);
+		}
+		int pos = Arrays.binarySearch(this.vars, from);
+		if (pos < 0)
+			pos = -pos - 1;
+		return (pos < this.vars.length) ? this.vars[pos] : -1;
+	}
+
+	public void addVariablesTo(BitSet bs) {
+		if (this.vars == null) {
+			bs.or(this.signature);
+		} else {
+			for (int v : this.vars) {
+				bs.set(v);
+			}
+		}
+	}
+
+	/**
+	 * @param var
+	 * @return the (interned) clause with the variables of this one plus var
+	 */
+	public Clause cloneAdd(int var) {
+		BitSet bs = this.getSignature();
+		bs = (BitSet) bs.clone();
+		bs.set(var);
+		return new Clause(this.size, bs).intern();
+	}
+
+	/**
+	 * @param var
+	 * @return the (interned) clause with the variables of this one minus var
+	 */
+	public Clause cloneRemove(int var) {
+		BitSet bs = this.getSignature();
+		bs = (BitSet) bs.clone();
+		bs.clear(var);
+		return new Clause(this.size, bs).intern();
+	}
+
+	/**
+	 * Returns the canonical instance of this clause for its dimension, as
+	 * String.intern. The signature of an interned clause must not be modified.
+	 * 
+	 * @return
+	 */
+	public Clause intern() {
+		if (this.interned)
+			return this;
+		Interner<Clause> interner = interners.get(this.size);
+		if (interner == null) {
+			interners.putIfAbsent(this.size, new Interner<Clause>());
+			interner = interners.get(this.size);
+		}
+		Clause c = interner.intern(this);
+		c.interned = true;
+		return c;
+	}
+
+	public int getNumberVars() {
+		return this.size;
 	}
 
 	public int hashCode() {
-		return this.signature.hashCode();
+		if (this.vars == null) {
+			return this.signature.hashCode();
+		}
+		// same value as BitSet.hashCode, so that it does not depend on the
+		// representation
+		long h = 1234;
+		long word = 0;
+		int wordIndex = -1;
+		for (int v : this.vars) {
+			if ((v >> 6) != wordIndex) {
+				h ^= word * (wordIndex + 1);
+				wordIndex = v >> 6;
+				word = 0;
+			}
+			word |= 1L << v;
+		}
+		h ^= word * (wordIndex + 1);
+		return (int) ((h >> 32) ^ h);
 	}
 
 	public int order() {
-		return this.signature.cardinality();
+		return (this.vars == null) ? this.signature.cardinality() : this.vars.length;
 	}
 
 	public boolean equals(Object o) {
+		if (this == o)
+			return true;
 		Clause co = (Clause) o;
-		if (this.size != co.size || this.signature.cardinality() != co.signature.cardinality())
+		if (this.interned && co.interned)
 			return false;
-		for (int i = 0; i < this.size; i++) {
-			if (this.signature.get(i) != co.signature.get(i)) {
-				return false;
-			}
+		if (this.size != co.size || this.order() != co.order())
+			return false;
+		// same size and order implies the same representation
+		if (this.vars != null) {
+			return Arrays.equals(this.vars, co.vars);
 		}
-		return true;
+		return this.signature.equals(co.signature);
 	}
 
 	public boolean dominatesOrEqualTo(Clause c) {
-		for (int i = 0; i < this.size; i++) {
-			if (c.signature.get(i) && !this.signature.get(i)) {
+		if (this.vars != null && c.vars != null) {
+			// merge of both sorted variable arrays
+			if (c.vars.length > this.vars.length)
+				return false;
+			int i = 0;
+			for (int v : c.vars) {
+				while (i < this.vars.length && this.vars[i] < v)
+					i++;
+				if (i == this.vars.length || this.vars[i] != v)
+					return false;
+				i++;
+			}
+			return true;
+		}
+		// only the positions set in c need to be checked
+		for (int i = c.nextVariable(0); i >= 0 && i < this.size; i = c.nextVariable(i + 1)) {
+			if (!this.isSet(i)) {
 				return false;
 			}
 		}
@@ -73,7 +252,9 @@ public class Clause {
 	}
 
 	public boolean isSet(int pos) {
-		return (pos < this.size) && (pos >= 0) && this.signature.get(pos);
+		if (pos >= this.size || pos < 0)
+			return false;
+		return (this.vars == null) ? this.signature.get(pos) : Arrays.binarySearch(this.vars, pos) >= 0;
 	}
 
 	public boolean isIndependent(Clause c) {
@@ -90,14 +271,11 @@ public class Clause {
 	}
 	
 	public boolean contains(Set<Clause> sClauses) {
-System.out.println(" " + this + " contains? any of " + sClauses);
 		for (Clause c : sClauses) {
 			if (this.dominatesOrEqualTo(c)) {
-				System.out.println("  true");
 				return true;
 			}
 		}
-		System.out.println("  false");
 		return false;
 	}
 	
@@ -112,17 +290,6 @@ System.out.println(" " + this + " contains? any of " + sClauses);
 
 
 	public String toString() {
-		String s = "{";
-		boolean first = true;
-		for (int i = 0; i < this.size; i++) {
-			if (this.signature.get(i)) {
-				if (!first)
-					s += ",";
-				first = false;
-				s += i + 1;
-			}
-//			s += this.signature.get(i) ? i+1 : "";
-		}
-		return s + "}";
+		return FormulaWriter.append(new StringBuilder(), this).toString();
 	}
 }
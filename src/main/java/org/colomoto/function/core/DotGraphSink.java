@@ -0,0 +1,50 @@
+package org.colomoto.function.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a Hasse sub-diagram in the Graphviz DOT format. Nodes are named by
+ * their formula, and edges go from each formula to its parents.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class DotGraphSink extends ChannelGraphSink {
+
+	public DotGraphSink(File file) throws IOException {
+		this(open(file));
+	}
+
+	public DotGraphSink(WritableByteChannel channel) throws IOException {
+		super(channel);
+		this.write("digraph hasse {\n");
+	}
+
+	@Override
+	public void node(Formula f) throws IOException {
+		this.write("  \"");
+		this.write(f);
+		this.write("\";\n");
+	}
+
+	@Override
+	public void edge(Formula fLower, Formula fUpper) throws IOException {
+		this.write("  \"");
+		this.write(fLower);
+		this.write("\" -> \"");
+		this.write(fUpper);
+		this.write("\";\n");
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.write("}\n");
+		} finally {
+			super.close();
+		}
+	}
+}
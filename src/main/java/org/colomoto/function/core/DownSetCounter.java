@@ -0,0 +1,232 @@
+package org.colomoto.function.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the monotone Boolean functions below a given formula, without
+ * enumerating them. A formula is seen as its truth table, where position x (a
+ * bit vector of the n variables) is true iff x dominates some clause of the
+ * formula. A function g is below f iff its truth table is pointwise smaller.
+ *
+ * Counting uses the Shannon decomposition on the last variable: g = (g0, g1) is
+ * monotone iff g0 and g1 are monotone and g0 <= g1. Hence, for a bound f =
+ * (f0, f1), the count is the sum, over all monotone g1 <= f1, of the number of
+ * monotone g0 <= (f0 & g1). The latter is memoized per number of variables.
+ * Truth tables of up to 6 variables are kept in a long.
+ *
+ * For 7 variables, the table is kept in two longs and split on the last two
+ * variables into four 5-variable quarters f = (f00, f01, f10, f11). The count
+ * is then the sum, over all monotone g01 <= f01 and g10 <= f10, of the number
+ * of monotone g00 <= (f00 & g01 & g10) times the number of monotone g11
+ * between (g01 | g10) and f11, so that only 5-variable tables are enumerated.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class DownSetCounter {
+	public static final int MAX_VARS = 7;
+	private static final long QUARTER_MASK = 0xFFFFFFFFL;
+
+	private int nvars;
+	private List<Map<Long, Long>> memo;
+
+	public DownSetCounter(int nvars) {
+		if (nvars > MAX_VARS) {
+			throw new IllegalArgumentException("Down-set counting supports up to " + MAX_VARS + " variables");
+		}
+		this.nvars = nvars;
+		this.memo = new ArrayList<Map<Long, Long>>();
+		for (int k = 0; k <= nvars; k++) {
+			this.memo.add(new HashMap<Long, Long>());
+		}
+	}
+
+	/**
+	 * Counts the formulas smaller or equal to f. The constant false function
+	 * (no clauses) is never counted. If not degenerated, only the formulas
+	 * covering all the variables are counted, using inclusion-exclusion on the
+	 * set of variables allowed to appear.
+	 *
+	 * @param f
+	 * @param degenerated
+	 * @return
+	 */
+	public synchronized long count(Formula f, boolean degenerated) {
+		long[] table = truthTable(this.nvars, f, new long[Math.max(1, (1 << this.nvars) >>> 6)]);
+		if (degenerated) {
+			return this.countBelow(table) - 1;
+		}
+		long total = 0;
+		int all = (1 << this.nvars) - 1;
+		for (int vars = 0; vars < all; vars++) {
+			int k = Integer.bitCount(vars);
+			long n = this.countBelow(k, project(table, vars, k));
+			total += ((this.nvars - k) % 2 == 0) ? n : -n;
+		}
+		return total + this.countBelow(table);
+	}
+
+	private long countBelow(long[] table) {
+		if (this.nvars < MAX_VARS) {
+			return this.countBelow(this.nvars, table[0]);
+		}
+		return this.countBelow7(table[0], table[1]);
+	}
+
+	/**
+	 * Builds the truth table of the formula, as a long of 2^n bits.
+	 *
+	 * @param nvars
+	 * @param f
+	 * @return
+	 */
+	static long truthTable(int nvars, Formula f) {
+		return truthTable(nvars, f, new long[1])[0];
+	}
+
+	private static long[] truthTable(int nvars, Formula f, long[] table) {
+		for (int x = 0; x < (1 << nvars); x++) {
+			for (Clause c : f.getClauses()) {
+				if (covers(x, c.getSignature())) {
+					table[x >>> 6] |= 1L << (x & 63);
+					break;
+				}
+			}
+		}
+		return table;
+	}
+
+	private static boolean covers(int x, BitSet signature) {
+		for (int i = signature.nextSetBit(0); i >= 0; i = signature.nextSetBit(i + 1)) {
+			if ((x & (1 << i)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Restricts the truth table to the points where only the given variables
+	 * may be true, re-indexed over those k variables. A monotone function that
+	 * does not depend on the remaining variables is below the table iff it is
+	 * below this projection.
+	 *
+	 * @param table
+	 * @param vars
+	 * @param k
+	 * @return
+	 */
+	private static long project(long[] table, int vars, int k) {
+		long projected = 0L;
+		for (int y = 0; y < (1 << k); y++) {
+			int x = 0;
+			int bit = 0;
+			for (int i = vars; i != 0; i &= i - 1) {
+				if ((y & (1 << bit)) != 0)
+					x |= Integer.lowestOneBit(i);
+				bit++;
+			}
+			if ((table[x >>> 6] & (1L << (x & 63))) != 0)
+				projected |= 1L << y;
+		}
+		return projected;
+	}
+
+	/**
+	 * Number of monotone functions over k variables below the given truth
+	 * table (including the constant false).
+	 *
+	 * @param k
+	 * @param table
+	 * @return
+	 */
+	private long countBelow(int k, long table) {
+		if (k == 0) {
+			return ((table & 1L) == 0) ? 1 : 2;
+		}
+		Long key = table;
+		Long cached = this.memo.get(k).get(key);
+		if (cached != null) {
+			return cached;
+		}
+		int half = 1 << (k - 1);
+		long mask = (1L << half) - 1;
+		long t0 = table & mask;
+		long t1 = (table >>> half) & mask;
+		long n = 0;
+		for (long g1 : listBelow(k - 1, t1)) {
+			n += this.countBelow(k - 1, t0 & g1);
+		}
+		this.memo.get(k).put(key, n);
+		return n;
+	}
+
+	/**
+	 * Number of monotone functions over 7 variables below the truth table given
+	 * by its two halves (including the constant false).
+	 *
+	 * @param lo the points where the last variable is false
+	 * @param hi the points where the last variable is true
+	 * @return
+	 */
+	private long countBelow7(long lo, long hi) {
+		long f00 = lo & QUARTER_MASK;
+		long f01 = lo >>> 32;
+		long f10 = hi & QUARTER_MASK;
+		long f11 = hi >>> 32;
+		List<Long> lTop = listBelow(5, f11);
+		Map<Long, Long> mBetween = new HashMap<Long, Long>();
+		List<Long> l10 = listBelow(5, f10);
+		long n = 0;
+		for (long g01 : listBelow(5, f01)) {
+			for (long g10 : l10) {
+				long g = g01 | g10;
+				if ((g & ~f11) != 0)
+					continue;
+				Long between = mBetween.get(g);
+				if (between == null) {
+					between = 0L;
+					for (long g11 : lTop) {
+						if ((g & ~g11) == 0)
+							between++;
+					}
+					mBetween.put(g, between);
+				}
+				n += between * this.countBelow(5, f00 & g01 & g10);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Lists the truth tables of all monotone functions over k variables below
+	 * the given truth table (including the constant false).
+	 *
+	 * @param k
+	 * @param table
+	 * @return
+	 */
+	static List<Long> listBelow(int k, long table) {
+		List<Long> lBelow = new ArrayList<Long>();
+		if (k == 0) {
+			lBelow.add(0L);
+			if ((table & 1L) != 0)
+				lBelow.add(1L);
+			return lBelow;
+		}
+		int half = 1 << (k - 1);
+		long mask = (1L << half) - 1;
+		long t0 = table & mask;
+		long t1 = (table >>> half) & mask;
+		for (long g1 : listBelow(k - 1, t1)) {
+			for (long g0 : listBelow(k - 1, t0 & g1)) {
+				lBelow.add(g0 | (g1 << half));
+			}
+		}
+		return lBelow;
+	}
+}
@@ -6,18 +6,27 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Formulas can be interned (see intern), so that a single instance of each
+ * distinct formula is kept per dimension. Two interned formulas are equal iff
+ * they are the same instance.
  * 
  * @author Pedro T. Monteiro
  * @author Jose' R. Cury
  *
  */
 public class Formula {
+	private static final ConcurrentMap<Integer, Interner<Formula>> interners = new ConcurrentHashMap<Integer, Interner<Formula>>();
+
 	private int nvars;
 	private BitSet varRepresented;
 	private Set<Clause> clauses;
 	private boolean consistent;
+	private int hash;
+	private boolean interned;
 
 	public Formula(int nvars, Set<Clause> clauses) {
 		this.nvars = nvars;
@@ -36,7 +45,7 @@ public class Formula {
 		f.clauses.add(c);
 		f.varRepresented = new BitSet(f.nvars);
 		for (Clause ci : f.clauses) {
-			f.varRepresented.or(ci.getSignature());
+			ci.addVariablesTo(f.varRepresented);
 		}
 		f.updateConsistency();
 		return f;
@@ -65,22 +74,80 @@ public class Formula {
 		return sFMinus;
 	}
 
+	/**
+	 * Sum of the mixed clause hashes: clause hashes of small dimensions differ
+	 * only in a few bits, so plain sums of them collide heavily.
+	 */
 	public int hashCode() {
-		int hash = 0;
-		for (Clause c : this.clauses) {
-			hash += c.hashCode();
+		if (this.hash == 0) {
+			int hash = 0;
+			for (Clause c : this.clauses) {
+				hash += mix(c.hashCode());
+			}
+			this.hash = hash;
 		}
-		return hash;
+		return this.hash;
+	}
+
+	// MurmurHash3 finalizer
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		return h ^ (h >>> 16);
 	}
 
 	public boolean equals(Object o) {
+		if (this == o)
+			return true;
 		Formula fo = (Formula) o;
+		if (this.interned && fo.interned)
+			return false;
 		return (this.nvars == fo.nvars) && this.clauses.equals(fo.clauses);
 	}
 
+	/**
+	 * Returns the canonical instance of this formula for its dimension, as
+	 * String.intern. Its clauses are interned as well. Interned formulas cannot
+	 * be modified.
+	 * 
+	 * @return
+	 */
+	public Formula intern() {
+		if (this.interned)
+			return this;
+		boolean bInterned = true;
+		for (Clause c : this.clauses) {
+			if (c.intern() != c) {
+				bInterned = false;
+				break;
+			}
+		}
+		if (!bInterned) {
+			Set<Clause> sClauses = new HashSet<Clause>();
+			for (Clause c : this.clauses) {
+				sClauses.add(c.intern());
+			}
+			this.clauses = sClauses;
+		}
+		Interner<Formula> interner = interners.get(this.nvars);
+		if (interner == null) {
+			interners.putIfAbsent(this.nvars, new Interner<Formula>());
+			interner = interners.get(this.nvars);
+		}
+		Formula f = interner.intern(this);
+		f.interned = true;
+		return f;
+	}
+
 	public void addClause(Clause c) {
+		if (this.interned) {
+			throw new IllegalStateException("An interned formula cannot be modified");
+		}
+		this.hash = 0;
 		this.clauses.add(c);
-		this.varRepresented.or(c.getSignature());
+		c.addVariablesTo(this.varRepresented);
 		this.updateConsistency();
 	}
 
@@ -93,13 +160,35 @@ public class Formula {
 	}
 
 	private void updateConsistency() {
-		this.consistent = this.independentClauses() && this.isCover();
-	}
-
-	private boolean independentClauses() {
-		List<Clause> lClauses = new ArrayList<Clause>(this.clauses);
-		for (int i = 0; i < (lClauses.size() - 2); i++) {
-			for (int j = i + 1; j < (lClauses.size() - 1); j++) {
+		this.varRepresented = representedVars(this.nvars, this.clauses);
+		this.consistent = independentClauses(this.clauses) && this.varRepresented.cardinality() == this.nvars;
+	}
+
+	/**
+	 * Checks whether a set of clauses would yield a consistent formula, without
+	 * having to build the corresponding Formula object.
+	 * 
+	 * @param nvars
+	 * @param sClauses
+	 * @return
+	 */
+	static boolean isConsistent(int nvars, Set<Clause> sClauses) {
+		return independentClauses(sClauses) && representsAll(nvars, sClauses);
+	}
+
+	/**
+	 * @param nvars
+	 * @param sClauses
+	 * @return whether every variable appears in some clause
+	 */
+	static boolean representsAll(int nvars, Set<Clause> sClauses) {
+		return representedVars(nvars, sClauses).cardinality() == nvars;
+	}
+
+	static boolean independentClauses(Set<Clause> sClauses) {
+		List<Clause> lClauses = new ArrayList<Clause>(sClauses);
+		for (int i = 0; i < (lClauses.size() - 1); i++) {
+			for (int j = i + 1; j < lClauses.size(); j++) {
 				if (!lClauses.get(i).isIndependent(lClauses.get(j))) {
 					return false;
 				}
@@ -108,12 +197,12 @@ public class Formula {
 		return true;
 	}
 
-	private boolean isCover() {
-		this.varRepresented = new BitSet(this.nvars);
-		for (Clause c : clauses) {
-			this.varRepresented.or(c.getSignature());
+	private static BitSet representedVars(int nvars, Set<Clause> sClauses) {
+		BitSet bs = new BitSet(nvars);
+		for (Clause c : sClauses) {
+			c.addVariablesTo(bs);
 		}
-		return this.varRepresented.cardinality() == this.nvars;
+		return bs;
 	}
 
 	public boolean isSmallerThan(Formula f) {
@@ -132,15 +221,32 @@ public class Formula {
 		return true;
 	}
 
-	public String toString() {
-		String sTmp = "{";
-		boolean first = true;
-		for (Clause c : this.clauses) {
-			if (!first)
-				sTmp += ",";
-			first = false;
-			sTmp += c;
+	/**
+	 * Checks whether this formula is below or equal to formula f in the Hasse
+	 * diagram, i.e., whether every clause of this formula dominates (or is equal
+	 * to) some clause of f. Notice that isSmallerThan compares clauses the other
+	 * way around.
+	 * 
+	 * @param f
+	 * @return
+	 */
+	public boolean isBelowOrEqualTo(Formula f) {
+		for (Clause tf : this.clauses) {
+			boolean bBelow = false;
+			for (Clause cf : f.clauses) {
+				if (tf.dominatesOrEqualTo(cf)) {
+					bBelow = true;
+					break;
+				}
+			}
+			if (!bBelow) {
+				return false;
+			}
 		}
-		return sTmp + "}";
+		return true;
+	}
+
+	public String toString() {
+		return FormulaWriter.append(new StringBuilder(), this).toString();
 	}
 }
@@ -0,0 +1,71 @@
+package org.colomoto.function.core;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Primitive encoding of formulas, so that they can be stored outside of the
+ * Java heap. Each clause of n variables is identified by the integer whose
+ * bits are its variables, and a formula is encoded as a bit vector of size 2^n
+ * (packed into longs) with the bits of its clauses set. Keys thus double in
+ * size with each variable, and are limited to 12 variables (512 bytes).
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class FormulaCodec {
+	public static final int MAX_VARS = 12;
+
+	private int nvars;
+	private int words;
+
+	public FormulaCodec(int nvars) {
+		if (nvars > MAX_VARS) {
+			throw new IllegalArgumentException("Formula encoding supports up to " + MAX_VARS + " variables");
+		}
+		this.nvars = nvars;
+		this.words = Math.max(1, (1 << nvars) >>> 6);
+	}
+
+	/**
+	 * @return the number of longs of an encoded formula
+	 */
+	public int getWords() {
+		return this.words;
+	}
+
+	public long[] newKey() {
+		return new long[this.words];
+	}
+
+	public void encode(Formula f, long[] key) {
+		for (int w = 0; w < this.words; w++) {
+			key[w] = 0L;
+		}
+		for (Clause c : f.getClauses()) {
+			int id = 0;
+			for (int i = c.nextVariable(0); i >= 0; i = c.nextVariable(i + 1)) {
+				id |= 1 << i;
+			}
+			key[id >>> 6] |= 1L << (id & 63);
+		}
+	}
+
+	public Formula decode(long[] key) {
+		Set<Clause> sClauses = new HashSet<Clause>();
+		for (int w = 0; w < this.words; w++) {
+			for (long bits = key[w]; bits != 0; bits &= bits - 1) {
+				int id = (w << 6) | Long.numberOfTrailingZeros(bits);
+				BitSet bs = new BitSet(this.nvars);
+				for (int i = 0; i < this.nvars; i++) {
+					if ((id & (1 << i)) != 0)
+						bs.set(i);
+				}
+				sClauses.add(new Clause(this.nvars, bs));
+			}
+		}
+		return new Formula(this.nvars, sClauses);
+	}
+}
@@ -0,0 +1,343 @@
+package org.colomoto.function.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Iterates over all the ancestors (or descendants) of a formula, as
+ * getFormulaAncestors (or getFormulaDescendants) but without keeping the
+ * explored formulas in the Java heap. Explored formulas are kept encoded in an
+ * off-heap set, and the formulas still to explore in a frontier that spills to
+ * disk once it exceeds a given memory budget. Only the formula being returned
+ * and its direct neighbours are Java objects at any given time.
+ *
+ * The exploration can be periodically saved to a checkpoint file, from which it
+ * can later be resumed. As the explored set only grows, it is saved
+ * incrementally: explored formulas are appended to a log next to the
+ * checkpoint (with the .log suffix), and the checkpoint itself only holds the
+ * number of logged formulas it covers and a copy of the frontier. The log is
+ * synced first, then the checkpoint is written to a temporary file, synced to
+ * disk and renamed, so that the last complete checkpoint survives a crash
+ * during the write. Formulas logged after it are discarded on resume.
+ *
+ * The explored sub-diagram can also be streamed to a {@link HasseGraphSink}:
+ * each formula is given as a node when returned, followed by its covering
+ * edges to all its parents (or children). The sink is not part of the
+ * checkpoint.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaExplorer implements Iterator<Formula> {
+	private static final int CHECKPOINT_MAGIC = 0x46484350; // "FHCP"
+	private static final int CHECKPOINT_VERSION = 2;
+	private static final int CHECKPOINT_HEADER_BYTES = 38;
+
+	private HasseDiagram hd;
+	private boolean ancestors;
+	private boolean degenerated;
+	private FormulaCodec codec;
+	private OffHeapFormulaSet sExplored;
+	private SpillingFormulaQueue qToExplore;
+	private long[] key;
+	private long returned;
+	private File checkpointFile;
+	private FormulaKeyLog log;
+	private long checkpointPeriod;
+	private long lastCheckpoint;
+	private HasseGraphSink sink;
+
+	/**
+	 * @param hd
+	 * @param fInit
+	 * @param ancestors    true to explore the ancestors, false for the
+	 *                     descendants
+	 * @param degenerated
+	 * @param frontierBytes the memory budget of the frontier before spilling to
+	 *                     disk
+	 * @param spillDir     the directory of the spill file, or null for the
+	 *                     default temporary directory
+	 */
+	public FormulaExplorer(HasseDiagram hd, Formula fInit, boolean ancestors, boolean degenerated,
+			long frontierBytes, File spillDir) {
+		this(hd, ancestors, degenerated, frontierBytes, spillDir);
+		this.codec.encode(fInit, this.key);
+		this.add(this.key);
+	}
+
+	private FormulaExplorer(HasseDiagram hd, boolean ancestors, boolean degenerated, long frontierBytes,
+			File spillDir) {
+		this.hd = hd;
+		this.ancestors = ancestors;
+		this.degenerated = degenerated;
+		this.codec = new FormulaCodec(hd.getSize());
+		this.sExplored = new OffHeapFormulaSet(this.codec.getWords());
+		this.qToExplore = new SpillingFormulaQueue(this.codec.getWords(), frontierBytes, spillDir);
+		this.key = this.codec.newKey();
+	}
+
+	/**
+	 * Resumes an exploration from a checkpoint file.
+	 *
+	 * @param hd            the Hasse diagram of the same dimension as the
+	 *                      checkpointed exploration
+	 * @param checkpoint
+	 * @param frontierBytes the memory budget of the frontier before spilling to
+	 *                      disk
+	 * @param spillDir      the directory of the spill file, or null for the
+	 *                      default temporary directory
+	 * @return
+	 * @throws IOException if the file is not a complete checkpoint of the given
+	 *                     dimension
+	 */
+	public static FormulaExplorer resume(HasseDiagram hd, File checkpoint, long frontierBytes, File spillDir)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint), 1 << 16));
+		try {
+			if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != CHECKPOINT_VERSION) {
+				throw new IOException("Not a checkpoint file: " + checkpoint);
+			}
+			int nvars = in.readInt();
+			if (nvars != hd.getSize()) {
+				throw new IOException("Checkpoint of dimension " + nvars + " instead of " + hd.getSize());
+			}
+			boolean ancestors = in.readBoolean();
+			boolean degenerated = in.readBoolean();
+			FormulaExplorer fe = new FormulaExplorer(hd, ancestors, degenerated, frontierBytes, spillDir);
+			fe.returned = in.readLong();
+			long logged = in.readLong();
+			for (long n = in.readLong(); n > 0; n--) {
+				fe.readKey(in);
+				fe.push(fe.key);
+			}
+			if (in.readInt() != CHECKPOINT_MAGIC) {
+				throw new IOException("Truncated checkpoint file: " + checkpoint);
+			}
+			fe.log = new FormulaKeyLog(logFile(checkpoint), fe.codec.getWords(), logged);
+			fe.log.readInto(fe.sExplored);
+			fe.checkpointFile = checkpoint;
+			fe.checkpointPeriod = Long.MAX_VALUE;
+			return fe;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void readKey(DataInputStream in) throws IOException {
+		for (int w = 0; w < this.key.length; w++) {
+			this.key[w] = in.readLong();
+		}
+	}
+
+	private static File logFile(File checkpoint) {
+		return new File(checkpoint.getPath() + ".log");
+	}
+
+	/**
+	 * Enables periodic checkpoints. A checkpoint is written, at most every given
+	 * period, before computing the next formula. Unless it is the checkpoint
+	 * this exploration was resumed from, the formulas explored so far are first
+	 * logged at once.
+	 *
+	 * @param file
+	 * @param periodMillis
+	 * @throws IOException
+	 */
+	public void setCheckpoint(File file, long periodMillis) throws IOException {
+		if (this.log == null || !file.equals(this.checkpointFile)) {
+			if (this.log != null) {
+				this.log.close();
+			}
+			this.log = new FormulaKeyLog(logFile(file), this.codec.getWords(), 0);
+			this.sExplored.appendTo(this.log);
+		}
+		this.checkpointFile = file;
+		this.checkpointPeriod = periodMillis;
+		this.lastCheckpoint = System.currentTimeMillis();
+	}
+
+	/**
+	 * Streams the nodes and covering edges of the formulas returned from now on
+	 * to the given sink. The sink is not closed by the explorer.
+	 *
+	 * @param sink the sink, or null to stop streaming
+	 */
+	public void setGraphSink(HasseGraphSink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Writes the current state of the exploration to the checkpoint file. Only
+	 * the formulas explored since the previous checkpoint and the frontier are
+	 * written.
+	 *
+	 * @throws IOException
+	 */
+	public void checkpoint() throws IOException {
+		if (this.checkpointFile == null) {
+			throw new IllegalStateException("No checkpoint file defined");
+		}
+		long logged = this.log.sync();
+		File tmp = new File(this.checkpointFile.getPath() + ".tmp");
+		FileChannel out = new FileOutputStream(tmp).getChannel();
+		try {
+			ByteBuffer header = ByteBuffer.allocate(CHECKPOINT_HEADER_BYTES);
+			header.putInt(CHECKPOINT_MAGIC);
+			header.putInt(CHECKPOINT_VERSION);
+			header.putInt(this.hd.getSize());
+			header.put((byte) (this.ancestors ? 1 : 0));
+			header.put((byte) (this.degenerated ? 1 : 0));
+			header.putLong(this.returned);
+			header.putLong(logged);
+			header.putLong(this.qToExplore.size());
+			header.flip();
+			writeFully(out, header);
+			this.qToExplore.writeTo(out);
+			ByteBuffer trailer = ByteBuffer.allocate(4);
+			trailer.putInt(CHECKPOINT_MAGIC);
+			trailer.flip();
+			writeFully(out, trailer);
+			out.force(true);
+		} finally {
+			out.close();
+		}
+		// rename is atomic on POSIX, elsewhere the old checkpoint is removed first
+		if (!tmp.renameTo(this.checkpointFile)) {
+			this.checkpointFile.delete();
+			if (!tmp.renameTo(this.checkpointFile)) {
+				throw new IOException("Cannot rename " + tmp + " to " + this.checkpointFile);
+			}
+		}
+		this.lastCheckpoint = System.currentTimeMillis();
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer bb) throws IOException {
+		while (bb.hasRemaining()) {
+			out.write(bb);
+		}
+	}
+
+	/**
+	 * @return the number of formulas returned so far, including those returned
+	 *         before the checkpoint this exploration was resumed from
+	 */
+	public long getNumberReturned() {
+		return this.returned;
+	}
+
+	/**
+	 * @return the number of formulas found so far (returned or to be returned)
+	 */
+	public long getNumberFound() {
+		return this.sExplored.size();
+	}
+
+	/**
+	 * @return the number of formulas found but not yet returned
+	 */
+	public long getFrontierSize() {
+		return this.qToExplore.size();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !this.qToExplore.isEmpty();
+	}
+
+	@Override
+	public Formula next() {
+		if (this.checkpointFile != null
+				&& System.currentTimeMillis() - this.lastCheckpoint >= this.checkpointPeriod) {
+			try {
+				this.checkpoint();
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot write the checkpoint " + this.checkpointFile, e);
+			}
+		}
+		try {
+			if (!this.qToExplore.pop(this.key)) {
+				throw new NoSuchElementException();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read the exploration frontier", e);
+		}
+		Formula f = this.codec.decode(this.key);
+		Set<Formula> sNeighbours = this.hd.getTransientNeighbours(f, this.ancestors, this.degenerated);
+		if (this.sink != null) {
+			this.emit(f, sNeighbours);
+		}
+		for (Formula fNeighbour : sNeighbours) {
+			this.codec.encode(fNeighbour, this.key);
+			this.add(this.key);
+		}
+		this.returned++;
+		return f;
+	}
+
+	private void emit(Formula f, Set<Formula> sNeighbours) {
+		try {
+			this.sink.node(f);
+			for (Formula fNeighbour : sNeighbours) {
+				if (this.ancestors) {
+					this.sink.edge(f, fNeighbour);
+				} else {
+					this.sink.edge(fNeighbour, f);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write the explored graph", e);
+		}
+	}
+
+	private void add(long[] k) {
+		if (this.sExplored.add(k)) {
+			if (this.log != null) {
+				try {
+					this.log.append(k);
+				} catch (IOException e) {
+					throw new IllegalStateException("Cannot write the checkpoint log " + this.log.getFile(), e);
+				}
+			}
+			this.push(k);
+		}
+	}
+
+	private void push(long[] k) {
+		try {
+			this.qToExplore.push(k);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot spill the exploration frontier", e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Releases the spill file of the frontier, if any, and the checkpoint log.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		try {
+			this.qToExplore.close();
+		} finally {
+			if (this.log != null) {
+				this.log.close();
+				this.log = null;
+			}
+		}
+	}
+}
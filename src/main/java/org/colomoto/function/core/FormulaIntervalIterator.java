@@ -0,0 +1,66 @@
+package org.colomoto.function.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Iterates over all the formulas of the interval [fLow, fHigh] of the Hasse
+ * diagram. It walks up from fLow through the direct parents, discarding every
+ * parent which is no longer below fHigh, since none of its ancestors can be
+ * below fHigh either. Formulas are computed lazily, one exploration step at a
+ * time, and each formula is returned exactly once.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaIntervalIterator implements Iterator<Formula> {
+	private HasseDiagram hd;
+	private Formula fHigh;
+	private boolean degenerated;
+	private Set<Formula> sSeen;
+	private Deque<Formula> dToExplore;
+
+	public FormulaIntervalIterator(HasseDiagram hd, Formula fLow, Formula fHigh, boolean degenerated) {
+		this.hd = hd;
+		this.fHigh = fHigh;
+		this.degenerated = degenerated;
+		this.sSeen = new HashSet<Formula>();
+		this.dToExplore = new ArrayDeque<Formula>();
+		if (fLow.isBelowOrEqualTo(fHigh)) {
+			this.sSeen.add(fLow);
+			this.dToExplore.add(fLow);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !this.dToExplore.isEmpty();
+	}
+
+	@Override
+	public Formula next() {
+		if (this.dToExplore.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		Formula f = this.dToExplore.poll();
+		if (!f.equals(this.fHigh)) {
+			for (Formula fParent : this.hd.getFormulaParents(f, this.degenerated)) {
+				if (!this.sSeen.contains(fParent) && fParent.isBelowOrEqualTo(this.fHigh)) {
+					this.sSeen.add(fParent);
+					this.dToExplore.add(fParent);
+				}
+			}
+		}
+		return f;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
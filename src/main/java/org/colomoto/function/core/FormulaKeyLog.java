@@ -0,0 +1,123 @@
+package org.colomoto.function.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only file of encoded formulas (see {@link FormulaCodec}), used to
+ * checkpoint the explored set incrementally: as the explored set only grows,
+ * each checkpoint only needs to sync the formulas appended since the previous
+ * one. Keys are staged in a direct byte buffer and written in blocks.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class FormulaKeyLog {
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private File file;
+	private int words;
+	private int slotBytes;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long count;
+
+	/**
+	 * Opens the log, keeping only its first keys (those written after the last
+	 * sync are discarded).
+	 *
+	 * @param file
+	 * @param words the number of longs of an encoded formula
+	 * @param keep  the number of keys to keep from an existing log
+	 * @throws IOException if the log has less keys than the ones to keep
+	 */
+	public FormulaKeyLog(File file, int words, long keep) throws IOException {
+		this.file = file;
+		this.words = words;
+		this.slotBytes = words << 3;
+		this.channel = new RandomAccessFile(file, "rw").getChannel();
+		if (this.channel.size() < keep * this.slotBytes) {
+			this.channel.close();
+			throw new IOException("Truncated log " + file);
+		}
+		this.channel.truncate(keep * this.slotBytes);
+		this.channel.position(keep * this.slotBytes);
+		this.buffer = ByteBuffer.allocateDirect(Math.max(1, BUFFER_BYTES / this.slotBytes) * this.slotBytes);
+		this.count = keep;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public void append(long[] key) throws IOException {
+		if (this.buffer.remaining() < this.slotBytes) {
+			this.flush();
+		}
+		for (int w = 0; w < this.words; w++) {
+			this.buffer.putLong(key[w]);
+		}
+		this.count++;
+	}
+
+	/**
+	 * Adds all the logged keys to the set, reading the log in blocks.
+	 *
+	 * @param set
+	 * @throws IOException
+	 */
+	public void readInto(OffHeapFormulaSet set) throws IOException {
+		this.flush();
+		ByteBuffer bb = ByteBuffer.allocateDirect(this.buffer.capacity());
+		long[] key = new long[this.words];
+		long end = this.count * this.slotBytes;
+		for (long pos = 0; pos < end;) {
+			bb.clear();
+			bb.limit((int) Math.min(bb.capacity(), end - pos));
+			while (bb.hasRemaining()) {
+				if (this.channel.read(bb, pos + bb.position()) < 0)
+					throw new IOException("Truncated log " + this.file);
+			}
+			bb.flip();
+			pos += bb.remaining();
+			while (bb.hasRemaining()) {
+				for (int w = 0; w < this.words; w++) {
+					key[w] = bb.getLong();
+				}
+				set.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Writes the staged keys and forces them to disk.
+	 *
+	 * @return the number of keys in the log
+	 * @throws IOException
+	 */
+	public long sync() throws IOException {
+		this.flush();
+		this.channel.force(false);
+		return this.count;
+	}
+
+	private void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	public void close() throws IOException {
+		try {
+			this.flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package org.colomoto.function.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Parses formulas written as sets of sets of variables, e.g. {{1,2},{2,3}},
+ * where variables are numbered from 1 to n. Whitespace is allowed anywhere
+ * between tokens. The input is read in a single pass, character by character,
+ * directly from any CharSequence (a String, a CharBuffer, or a memory-mapped
+ * file, see {@link #open(int, File)}), without intermediate strings.
+ *
+ * An input may contain several formulas, one after the other. Errors are
+ * reported as a ParseException whose error offset is the position of the
+ * offending character in the input.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaParser {
+	private int nvars;
+	private CharSequence input;
+	private int pos;
+
+	public FormulaParser(int nvars, CharSequence input) {
+		this.nvars = nvars;
+		this.input = input;
+		this.pos = 0;
+	}
+
+	/**
+	 * Opens a parser reading directly from a memory-mapped (ASCII) file. The
+	 * file must be smaller than 2GB.
+	 *
+	 * @param nvars
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static FormulaParser open(int nvars, File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			ByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			return new FormulaParser(nvars, new AsciiSequence(bb));
+		} finally {
+			// the mapping remains valid after closing the file
+			raf.close();
+		}
+	}
+
+	public static Formula parseFormula(int nvars, CharSequence s) throws ParseException {
+		FormulaParser fp = new FormulaParser(nvars, s);
+		Formula f = fp.readFormula();
+		fp.checkEnd();
+		return f;
+	}
+
+	public static Clause parseClause(int nvars, CharSequence s) throws ParseException {
+		FormulaParser fp = new FormulaParser(nvars, s);
+		Clause c = fp.readClause();
+		fp.checkEnd();
+		return c;
+	}
+
+	/**
+	 * @return the current position in the input
+	 */
+	public int getPosition() {
+		return this.pos;
+	}
+
+	/**
+	 * @return true if there is something other than whitespace left to parse
+	 */
+	public boolean hasNext() {
+		this.skipWhitespace();
+		return this.pos < this.input.length();
+	}
+
+	/**
+	 * Parses the next formula of the input.
+	 *
+	 * @return
+	 * @throws ParseException
+	 */
+	public Formula next() throws ParseException {
+		return this.readFormula();
+	}
+
+	private Formula readFormula() throws ParseException {
+		Set<Clause> sClauses = new HashSet<Clause>();
+		this.expect('{');
+		do {
+			sClauses.add(this.readClause());
+		} while (this.nextSeparator());
+		return new Formula(this.nvars, sClauses).intern();
+	}
+
+	private Clause readClause() throws ParseException {
+		BitSet bs = new BitSet(this.nvars);
+		this.expect('{');
+		do {
+			bs.set(this.readVariable() - 1);
+		} while (this.nextSeparator());
+		return new Clause(this.nvars, bs).intern();
+	}
+
+	private int readVariable() throws ParseException {
+		this.skipWhitespace();
+		int start = this.pos;
+		int v = 0;
+		while (this.pos < this.input.length()) {
+			char c = this.input.charAt(this.pos);
+			if (c < '0' || c > '9')
+				break;
+			v = v * 10 + (c - '0');
+			if (v > this.nvars)
+				throw this.error("Variable out of range [1," + this.nvars + "]", start);
+			this.pos++;
+		}
+		if (this.pos == start)
+			throw this.error("Expected a variable", start);
+		if (v == 0)
+			throw this.error("Variable out of range [1," + this.nvars + "]", start);
+		return v;
+	}
+
+	/**
+	 * Consumes either a ',' (returning true) or a '}' (returning false).
+	 */
+	private boolean nextSeparator() throws ParseException {
+		this.skipWhitespace();
+		if (this.pos < this.input.length()) {
+			char c = this.input.charAt(this.pos);
+			if (c == ',' || c == '}') {
+				this.pos++;
+				return c == ',';
+			}
+		}
+		throw this.error("Expected ',' or '}'", this.pos);
+	}
+
+	private void expect(char c) throws ParseException {
+		this.skipWhitespace();
+		if (this.pos >= this.input.length() || this.input.charAt(this.pos) != c)
+			throw this.error("Expected '" + c + "'", this.pos);
+		this.pos++;
+	}
+
+	private void checkEnd() throws ParseException {
+		this.skipWhitespace();
+		if (this.pos < this.input.length())
+			throw this.error("Unexpected character", this.pos);
+	}
+
+	private void skipWhitespace() {
+		while (this.pos < this.input.length() && Character.isWhitespace(this.input.charAt(this.pos)))
+			this.pos++;
+	}
+
+	private ParseException error(String msg, int offset) {
+		int line = 1;
+		int lineStart = 0;
+		for (int i = 0; i < offset; i++) {
+			if (this.input.charAt(i) == '\n') {
+				line++;
+				lineStart = i + 1;
+			}
+		}
+		String found = (offset < this.input.length()) ? "'" + this.input.charAt(offset) + "'" : "end of input";
+		return new ParseException(msg + " at line " + line + ", column " + (offset - lineStart + 1) + " (found "
+				+ found + ")", offset);
+	}
+
+	/**
+	 * Read-only view of a buffer of ASCII bytes as a sequence of characters.
+	 */
+	private static class AsciiSequence implements CharSequence {
+		private ByteBuffer bb;
+
+		public AsciiSequence(ByteBuffer bb) {
+			this.bb = bb;
+		}
+
+		@Override
+		public int length() {
+			return this.bb.limit();
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (this.bb.get(index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			ByteBuffer sub = this.bb.duplicate();
+			sub.position(start);
+			sub.limit(end);
+			return new AsciiSequence(sub.slice());
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(this.length());
+			for (int i = 0; i < this.length(); i++) {
+				sb.append(this.charAt(i));
+			}
+			return sb.toString();
+		}
+	}
+}
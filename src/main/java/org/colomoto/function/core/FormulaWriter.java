@@ -0,0 +1,99 @@
+package org.colomoto.function.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Writes formulas and clauses as sets of sets of variables, e.g. {{1,2},{2,3}},
+ * in the format read by {@link FormulaParser}. Characters are appended
+ * directly to the target, without building an intermediate String.
+ * 
+ * Clauses are written in lexicographic order of their variables, so that equal
+ * formulas are always written the same way, whatever the iteration order of
+ * their clause sets.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaWriter {
+	static final Comparator<Clause> CLAUSE_ORDER = new Comparator<Clause>() {
+		@Override
+		public int compare(Clause c1, Clause c2) {
+			int i = c1.nextVariable(0);
+			int j = c2.nextVariable(0);
+			while (i >= 0 && i == j) {
+				i = c1.nextVariable(i + 1);
+				j = c2.nextVariable(j + 1);
+			}
+			if (i == j)
+				return 0;
+			// a clause comes before the clauses it is a prefix of
+			if (i < 0 || (j >= 0 && i < j))
+				return -1;
+			return 1;
+		}
+	};
+
+	public void write(Appendable out, Formula f) throws IOException {
+		append(out, f);
+	}
+
+	public void write(Appendable out, Clause c) throws IOException {
+		append(out, c);
+	}
+
+	public static void append(Appendable out, Formula f) throws IOException {
+		Clause[] clauses = f.getClauses().toArray(new Clause[0]);
+		Arrays.sort(clauses, CLAUSE_ORDER);
+		out.append('{');
+		boolean first = true;
+		for (Clause c : clauses) {
+			if (!first)
+				out.append(',');
+			first = false;
+			append(out, c);
+		}
+		out.append('}');
+	}
+
+	public static void append(Appendable out, Clause c) throws IOException {
+		out.append('{');
+		boolean first = true;
+		for (int i = c.nextVariable(0); i >= 0; i = c.nextVariable(i + 1)) {
+			if (!first)
+				out.append(',');
+			first = false;
+			appendInt(out, i + 1);
+		}
+		out.append('}');
+	}
+
+	public static StringBuilder append(StringBuilder sb, Formula f) {
+		try {
+			append((Appendable) sb, f);
+		} catch (IOException e) {
+			// a StringBuilder never throws
+			throw new IllegalStateException(e);
+		}
+		return sb;
+	}
+
+	public static StringBuilder append(StringBuilder sb, Clause c) {
+		try {
+			append((Appendable) sb, c);
+		} catch (IOException e) {
+			// a StringBuilder never throws
+			throw new IllegalStateException(e);
+		}
+		return sb;
+	}
+
+	private static void appendInt(Appendable out, int i) throws IOException {
+		if (i >= 10) {
+			appendInt(out, i / 10);
+		}
+		out.append((char) ('0' + i % 10));
+	}
+}
@@ -0,0 +1,53 @@
+package org.colomoto.function.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a Hasse sub-diagram in the GraphML format. Node identifiers are their
+ * formula (which needs no XML escaping), and edges go from each formula to its
+ * parents.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class GraphMLGraphSink extends ChannelGraphSink {
+
+	public GraphMLGraphSink(File file) throws IOException {
+		this(open(file));
+	}
+
+	public GraphMLGraphSink(WritableByteChannel channel) throws IOException {
+		super(channel);
+		this.write("<?xml version=\"1.0\" encoding=\"US-ASCII\"?>\n");
+		this.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+		this.write("  <graph id=\"hasse\" edgedefault=\"directed\">\n");
+	}
+
+	@Override
+	public void node(Formula f) throws IOException {
+		this.write("    <node id=\"");
+		this.write(f);
+		this.write("\"/>\n");
+	}
+
+	@Override
+	public void edge(Formula fLower, Formula fUpper) throws IOException {
+		this.write("    <edge source=\"");
+		this.write(fLower);
+		this.write("\" target=\"");
+		this.write(fUpper);
+		this.write("\"/>\n");
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.write("  </graph>\n</graphml>\n");
+		} finally {
+			super.close();
+		}
+	}
+}
@@ -1,12 +1,19 @@
 package org.colomoto.function.core;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Hasse Diagram
@@ -24,9 +31,17 @@ public class HasseDiagram {
 	// n=6 -> 7.785.062 nodes
 	// n=7 -> 2.414.627.396.434 nodes
 	// n=8 -> 56.130.437.209.370.320.359.966 nodes
+	private static final long EXPORT_FRONTIER_BYTES = 64L << 20;
+	// a batch is split in up to BATCH_CHUNKS_PER_CORE chunks per core, of at
+	// least BATCH_MIN_CHUNK formulas
+	private static final int BATCH_CHUNKS_PER_CORE = 4;
+	static final int BATCH_MIN_CHUNK = 64;
+	private static final SharedExecutor batchExecutor = new SharedExecutor("HasseDiagram-batch");
+
 	private int nvars;
 	private PowerSetGraph powerSet;
-	private static Formula fBottom;
+	private Formula fBottom;
+	private DownSetCounter counter;
 
 	public HasseDiagram(int nvars) {
 		this.nvars = nvars;
@@ -50,57 +65,100 @@ public class HasseDiagram {
 		return sExplored;
 	}
 
+	/**
+	 * Explores the ancestors of a formula, as getFormulaAncestors, keeping the
+	 * explored formulas off-heap (see {@link FormulaExplorer}).
+	 *
+	 * @param fInit
+	 * @param degenerated
+	 * @param frontierBytes memory budget of the frontier before spilling to disk
+	 * @return
+	 */
+	public FormulaExplorer exploreFormulaAncestors(Formula fInit, boolean degenerated, long frontierBytes) {
+		return new FormulaExplorer(this, fInit, true, degenerated, frontierBytes, null);
+	}
+
+	/**
+	 * Streams the Hasse sub-diagram of the ancestors of a formula (nodes and
+	 * covering edges) to the given sink, in a single pass, without keeping it in
+	 * memory. The sink is closed at the end.
+	 *
+	 * @param fInit
+	 * @param degenerated
+	 * @param sink
+	 * @throws IOException
+	 */
+	public void exportFormulaAncestors(Formula fInit, boolean degenerated, HasseGraphSink sink)
+			throws IOException {
+		this.export(new FormulaExplorer(this, fInit, true, degenerated, EXPORT_FRONTIER_BYTES, null), sink);
+	}
+
 	public Set<Formula> getFormulaParents(Formula f, boolean degenerated) {
+		return this.toFormulas(this.computeParents(this.powerSet, f, degenerated));
+	}
+
+	/**
+	 * Computes the direct parents of each of the given formulas, as
+	 * getFormulaParents. The direct subsets and supersets of each clause are
+	 * computed once for the whole batch (see {@link MemoizedPowerSetGraph}),
+	 * equal formulas are only computed once, and chunks of formulas are
+	 * distributed over the available cores.
+	 * 
+	 * @param formulas
+	 * @param degenerated
+	 * @return the parents of each distinct formula
+	 */
+	public Map<Formula, Set<Formula>> getFormulaParents(Collection<Formula> formulas, boolean degenerated) {
+		return this.computeBatch(formulas, true, degenerated);
+	}
+
+	/**
+	 * Counts the direct parents of a formula, using the same rules as
+	 * getFormulaParents but without building the parent Formula objects.
+	 * 
+	 * @param f
+	 * @param degenerated
+	 * @return the number of direct parents of f
+	 */
+	public int countFormulaParents(Formula f, boolean degenerated) {
+		return this.computeParents(this.powerSet, f, degenerated).size();
+	}
+
+	private Set<Set<Clause>> computeParents(PowerSetGraph powerSet, Formula f, boolean degenerated) {
 		Set<Clause> sfClauses = f.getClauses();
-		Set<Formula> sFprime = new HashSet<Formula>();
+		Set<Set<Clause>> sFprime = new HashSet<Set<Clause>>();
 
 		// from the 1st rule
-System.out.println("F: " + f);
-System.out.println("Indep: " + this.powerSet.getIndependent(f.getClauses()));
-System.out.println("MaxId: " + this.powerSet.getMaximal(this.powerSet.getIndependent(f.getClauses())));
-		Set<Clause> sMaxIndpt = this.powerSet.getMaximal(this.powerSet.getIndependent(f.getClauses()));
+		Set<Clause> sMaxIndpt = powerSet.getMaximalIndependent(sfClauses);
 		for (Clause c : sMaxIndpt) {
-			Formula fprime = f.cloneAdd(c);
-			sFprime.add(fprime);
+			Set<Clause> sPrime = new HashSet<Clause>(sfClauses);
+			sPrime.add(c);
+			sFprime.add(sPrime);
 		}
 
 		// from 2nd rule
 		Set<Clause> sAllDominated = new HashSet<Clause>();
 		for (Clause c : sfClauses) {
-			sAllDominated.addAll(this.powerSet.getDominatedDirectly(c));
+			sAllDominated.addAll(powerSet.getDominatedDirectly(c));
 		}
 
 		// get maximal dominated sets, not included in an independent set sID
 		List<Clause> lCandidates = new ArrayList<Clause>();
-		for (Clause c : this.powerSet.getMaximal(sAllDominated)) {
+		for (Clause c : powerSet.getMaximal(sAllDominated)) {
 			if (c.isIndependent(sMaxIndpt)) {
 				lCandidates.add(c);
 			}
 		}
 
-		HashSet<Clause> sCand = new HashSet<Clause>();
-		for (int i = 0; i < lCandidates.size(); i++) {
-			Clause ci = lCandidates.get(i);
-			sCand.add(ci);
-			Formula fPrime = this.getConsistentFormula(sfClauses, sCand);
-			if (fPrime.isConsistent()) {
-				sFprime.add(fPrime);
-			} else {
-				if (degenerated) {
-					sFprime.add(fPrime);
-				} else {
-					for (int j = i + 1; j < lCandidates.size(); j++) {
-						Clause cj = lCandidates.get(j);
-						sCand.add(cj);
-						fPrime = this.getConsistentFormula(sfClauses, sCand);
-						if (fPrime.isConsistent()) {
-							sFprime.add(fPrime);
-						}
-						sCand.remove(cj);
-					}
-				}
+		if (degenerated) {
+			for (Clause c : lCandidates) {
+				Set<Clause> sCand = new HashSet<Clause>();
+				sCand.add(c);
+				sFprime.add(this.getConsistentClauses(powerSet, sfClauses, sCand));
 			}
-			sCand.remove(ci);
+		} else {
+			// minimal sets of candidates yielding a consistent formula
+			sFprime.addAll(new CandidateSearch(this.nvars, sfClauses, lCandidates).search());
 		}
 
 		return sFprime;
@@ -119,27 +177,151 @@ System.out.println("MaxId: " + this.powerSet.getMaximal(this.powerSet.getIndepen
 		return sExplored;
 	}
 
+	/**
+	 * Explores the descendants of a formula, as getFormulaDescendants, keeping
+	 * the explored formulas off-heap (see {@link FormulaExplorer}).
+	 *
+	 * @param fInit
+	 * @param degenerated
+	 * @param frontierBytes memory budget of the frontier before spilling to disk
+	 * @return
+	 */
+	public FormulaExplorer exploreFormulaDescendants(Formula fInit, boolean degenerated, long frontierBytes) {
+		return new FormulaExplorer(this, fInit, false, degenerated, frontierBytes, null);
+	}
+
+	/**
+	 * Streams the Hasse sub-diagram of the descendants of a formula, as
+	 * exportFormulaAncestors.
+	 *
+	 * @param fInit
+	 * @param degenerated
+	 * @param sink
+	 * @throws IOException
+	 */
+	public void exportFormulaDescendants(Formula fInit, boolean degenerated, HasseGraphSink sink)
+			throws IOException {
+		this.export(new FormulaExplorer(this, fInit, false, degenerated, EXPORT_FRONTIER_BYTES, null), sink);
+	}
+
+	private void export(FormulaExplorer fe, HasseGraphSink sink) throws IOException {
+		try {
+			fe.setGraphSink(sink);
+			while (fe.hasNext()) {
+				fe.next();
+			}
+		} catch (IllegalStateException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		} finally {
+			try {
+				fe.close();
+			} finally {
+				sink.close();
+			}
+		}
+	}
+
+	/**
+	 * Resumes an ancestor or descendant exploration from the checkpoint file
+	 * last written by its FormulaExplorer.
+	 *
+	 * @param checkpoint
+	 * @param frontierBytes memory budget of the frontier before spilling to disk
+	 * @return
+	 * @throws IOException
+	 */
+	public FormulaExplorer resumeExploration(File checkpoint, long frontierBytes) throws IOException {
+		return FormulaExplorer.resume(this, checkpoint, frontierBytes, null);
+	}
 
 	public Set<Formula> getFormulaChildren(Formula f, boolean degenerated) {
-		Set<Formula> sFSons = new HashSet<Formula>();
+		return this.toFormulas(this.computeChildren(this.powerSet, f, degenerated));
+	}
+
+	/**
+	 * Computes the direct children of each of the given formulas, as the batch
+	 * getFormulaParents.
+	 * 
+	 * @param formulas
+	 * @param degenerated
+	 * @return the children of each distinct formula
+	 */
+	public Map<Formula, Set<Formula>> getFormulaChildren(Collection<Formula> formulas, boolean degenerated) {
+		return this.computeBatch(formulas, false, degenerated);
+	}
+
+	/**
+	 * Counts the direct children of a formula, using the same rules as
+	 * getFormulaChildren but without building the child Formula objects.
+	 * 
+	 * @param f
+	 * @param degenerated
+	 * @return the number of direct children of f
+	 */
+	public int countFormulaChildren(Formula f, boolean degenerated) {
+		return this.computeChildren(this.powerSet, f, degenerated).size();
+	}
+
+	/**
+	 * Counts the formulas below (and including) a given formula, without
+	 * enumerating them. Formulas are counted as monotone functions over their
+	 * truth tables, using a memoized Shannon decomposition (see
+	 * {@link DownSetCounter}), kept across calls. It supports up to 7
+	 * variables.
+	 * 
+	 * @param f
+	 * @param degenerated whether to also count formulas not covering all the
+	 *                    variables
+	 * @return the size of the down-set of f
+	 */
+	public long countFormulaDescendants(Formula f, boolean degenerated) {
+		if (this.counter == null) {
+			this.counter = new DownSetCounter(this.nvars);
+		}
+		return this.counter.count(f, degenerated);
+	}
+
+	/**
+	 * Returns an iterator over all the formulas between fLow and fHigh
+	 * (inclusive). Instead of intersecting the ancestors of fLow with the
+	 * descendants of fHigh, it only explores the ancestors of fLow that remain
+	 * below fHigh. It is empty if fLow is not below fHigh.
+	 *
+	 * @param fLow
+	 * @param fHigh
+	 * @param degenerated
+	 * @return
+	 */
+	public Iterator<Formula> getFormulaInterval(Formula fLow, Formula fHigh, boolean degenerated) {
+		return new FormulaIntervalIterator(this, fLow, fHigh, degenerated);
+	}
+
+	private Set<Set<Clause>> computeChildren(PowerSetGraph powerSet, Formula f, boolean degenerated) {
+		Set<Set<Clause>> sFSons = new HashSet<Set<Clause>>();
 		Set<Clause> sFClauses = f.getClauses();
-		Map<Clause, Formula> mR3sigma = new HashMap<Clause, Formula>();
+		Map<Clause, Set<Clause>> mR3sigma = new HashMap<Clause, Set<Clause>>();
 
 		// Rule 3
+		// subsets of independent clauses are independent, so the clause pairs of
+		// f are only checked once
+		boolean bIndependent = Formula.independentClauses(sFClauses);
 		for (Clause cSigma : sFClauses) {
 			Set<Clause> sFprime = new HashSet<Clause>(sFClauses);
 			sFprime.remove(cSigma);
-			Formula fprime = new Formula(this.nvars, sFprime);
-			Set<Clause> sFsigma = this.powerSet.getIndependent(sFprime);
-			if (!cSigma.isContainedIn(sFsigma) && fprime.isConsistent()) {
-				sFSons.add(fprime);
-				mR3sigma.put(cSigma, fprime);
+			boolean bConsistent = bIndependent ? Formula.representsAll(this.nvars, sFprime)
+					: Formula.isConsistent(this.nvars, sFprime);
+			if (bConsistent && !powerSet.hasIndependentSuperset(cSigma, sFprime)) {
+				sFSons.add(sFprime);
+				mR3sigma.put(cSigma, sFprime);
 			}
 		}
 		
 		if (degenerated) {
-			for (Formula fprime : mR3sigma.values()) {
-				sFSons.add(fprime);
+			for (Set<Clause> sFprime : mR3sigma.values()) {
+				sFSons.add(sFprime);
 			}
 			return sFSons;
 		}
@@ -147,9 +329,9 @@ System.out.println("MaxId: " + this.powerSet.getMaximal(this.powerSet.getIndepen
 		// Rule 4
 		Set<Clause> sCallDom = new HashSet<Clause>();
 		for (Clause cSigma : sFClauses) {
-			sCallDom.addAll(this.powerSet.getDominantDirectly(cSigma));
+			sCallDom.addAll(powerSet.getDominantDirectly(cSigma));
 		}
-		sCallDom = this.powerSet.getMinimal(sCallDom);
+		sCallDom = powerSet.getMinimal(sCallDom);
 		Set<Clause> sCcandidates = new HashSet<Clause>();
 		for (Clause cSigma : sCallDom) {
 			if (!cSigma.contains(mR3sigma.keySet())) {
@@ -180,12 +362,79 @@ System.out.println("MaxId: " + this.powerSet.getMaximal(this.powerSet.getIndepen
 					sFprime.add(cSigma2);
 				}
 			}
-			sFSons.add(new Formula(this.nvars, sFprime));
+			sFSons.add(sFprime);
 		}
 		return sFSons;
 	}
 
-	private Formula getConsistentFormula(Set<Clause> sfClauses, Set<Clause> set) {
+	private Map<Formula, Set<Formula>> computeBatch(Collection<Formula> formulas, final boolean parents,
+			final boolean degenerated) {
+		// keeps the given order: neighbouring formulas share most of their clauses
+		List<Formula> lDistinct = new ArrayList<Formula>(new LinkedHashSet<Formula>(formulas));
+		final PowerSetGraph memo = new MemoizedPowerSetGraph(this.nvars);
+		int nChunks = Math.min(Runtime.getRuntime().availableProcessors() * BATCH_CHUNKS_PER_CORE,
+				lDistinct.size() / BATCH_MIN_CHUNK);
+		if (nChunks <= 1) {
+			return this.computeChunk(memo, lDistinct, parents, degenerated);
+		}
+
+		List<Future<Map<Formula, Set<Formula>>>> lFutures = new ArrayList<Future<Map<Formula, Set<Formula>>>>();
+		for (int i = 0; i < nChunks; i++) {
+			final List<Formula> lChunk = lDistinct.subList(i * lDistinct.size() / nChunks,
+					(i + 1) * lDistinct.size() / nChunks);
+			lFutures.add(batchExecutor.get().submit(new Callable<Map<Formula, Set<Formula>>>() {
+				@Override
+				public Map<Formula, Set<Formula>> call() {
+					return computeChunk(memo, lChunk, parents, degenerated);
+				}
+			}));
+		}
+		Map<Formula, Set<Formula>> mNeighbours = new HashMap<Formula, Set<Formula>>();
+		for (Map<Formula, Set<Formula>> mChunk : SharedExecutor.getAll(lFutures, "batch neighbour computation")) {
+			mNeighbours.putAll(mChunk);
+		}
+		return mNeighbours;
+	}
+
+	private Map<Formula, Set<Formula>> computeChunk(PowerSetGraph memo, List<Formula> lFormulas, boolean parents,
+			boolean degenerated) {
+		Map<Formula, Set<Formula>> mNeighbours = new HashMap<Formula, Set<Formula>>();
+		for (Formula f : lFormulas) {
+			mNeighbours.put(f, this.toFormulas(parents ? this.computeParents(memo, f, degenerated)
+					: this.computeChildren(memo, f, degenerated)));
+		}
+		return mNeighbours;
+	}
+
+	/**
+	 * Parents (or children) of a formula, as getFormulaParents (or
+	 * getFormulaChildren), but not interned. Meant for callers that do not keep
+	 * them, such as FormulaExplorer which encodes them off-heap.
+	 * 
+	 * @param f
+	 * @param parents
+	 * @param degenerated
+	 * @return
+	 */
+	Set<Formula> getTransientNeighbours(Formula f, boolean parents, boolean degenerated) {
+		return this.toFormulas(parents ? this.computeParents(this.powerSet, f, degenerated)
+				: this.computeChildren(this.powerSet, f, degenerated), false);
+	}
+
+	private Set<Formula> toFormulas(Set<Set<Clause>> sClauseSets) {
+		return this.toFormulas(sClauseSets, true);
+	}
+
+	private Set<Formula> toFormulas(Set<Set<Clause>> sClauseSets, boolean intern) {
+		Set<Formula> sFormulas = new HashSet<Formula>();
+		for (Set<Clause> sClauses : sClauseSets) {
+			Formula f = new Formula(this.nvars, sClauses);
+			sFormulas.add(intern ? f.intern() : f);
+		}
+		return sFormulas;
+	}
+
+	private Set<Clause> getConsistentClauses(PowerSetGraph powerSet, Set<Clause> sfClauses, Set<Clause> set) {
 		Set<Clause> sCandSons = new HashSet<Clause>();
 		for (Clause c : set) {
 			sCandSons.addAll(powerSet.getDominantDirectly(c));
@@ -195,17 +444,17 @@ System.out.println("MaxId: " + this.powerSet.getMaximal(this.powerSet.getIndepen
 		sPrime.removeAll(sCandSons);
 		sPrime.addAll(set);
 
-		return new Formula(nvars, sPrime);
+		return sPrime;
 	}
 
 	public Formula genBottomFormula() {
-		if (fBottom == null) {
+		if (this.fBottom == null) {
 			Set<Clause> fClauses = new HashSet<Clause>();
 			BitSet bs = new BitSet(this.nvars);
 			bs.set(0, this.nvars, true);
-			fClauses.add(new Clause(this.nvars, bs));
-			fBottom = new Formula(this.nvars, fClauses);
+			fClauses.add(new Clause(this.nvars, bs).intern());
+			this.fBottom = new Formula(this.nvars, fClauses).intern();
 		}
-		return fBottom;
+		return this.fBottom;
 	}
 }
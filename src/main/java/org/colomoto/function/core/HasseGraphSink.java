@@ -0,0 +1,33 @@
+package org.colomoto.function.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receiver of the nodes and covering edges of a Hasse sub-diagram, as they are
+ * found by a {@link FormulaExplorer}. Each explored formula is given once as a
+ * node, before any of the edges from it. Each covering edge is given once,
+ * from the smaller formula to the larger one.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public interface HasseGraphSink extends Closeable {
+
+	public void node(Formula f) throws IOException;
+
+	/**
+	 * @param fLower
+	 * @param fUpper a parent of fLower
+	 * @throws IOException
+	 */
+	public void edge(Formula fLower, Formula fUpper) throws IOException;
+
+	/**
+	 * Completes the output and releases the underlying resources.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException;
+}
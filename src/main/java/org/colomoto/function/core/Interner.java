@@ -0,0 +1,61 @@
+package org.colomoto.function.core;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps a single canonical instance of each distinct (equal) object, as
+ * String.intern. Canonical instances are weakly referenced, so they are
+ * released once no longer used elsewhere. The table is split into segments,
+ * each with its own lock, so that it can be used concurrently.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class Interner<T> {
+	private static final int SEGMENTS = 16;
+
+	private List<Map<T, WeakReference<T>>> segments;
+
+	public Interner() {
+		this.segments = new ArrayList<Map<T, WeakReference<T>>>();
+		for (int i = 0; i < SEGMENTS; i++) {
+			this.segments.add(new WeakHashMap<T, WeakReference<T>>());
+		}
+	}
+
+	/**
+	 * @param t
+	 * @return the canonical instance equal to t, t itself if there was none
+	 */
+	public T intern(T t) {
+		int h = t.hashCode();
+		Map<T, WeakReference<T>> m = this.segments.get((h ^ (h >>> 16)) & (SEGMENTS - 1));
+		synchronized (m) {
+			WeakReference<T> ref = m.get(t);
+			T canonical = (ref == null) ? null : ref.get();
+			if (canonical != null) {
+				return canonical;
+			}
+			m.put(t, new WeakReference<T>(t));
+			return t;
+		}
+	}
+
+	/**
+	 * @return the number of canonical instances still in use
+	 */
+	public int size() {
+		int size = 0;
+		for (Map<T, WeakReference<T>> m : this.segments) {
+			synchronized (m) {
+				size += m.size();
+			}
+		}
+		return size;
+	}
+}
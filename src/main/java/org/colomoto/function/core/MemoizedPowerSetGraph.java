@@ -0,0 +1,49 @@
+package org.colomoto.function.core;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * PowerSetGraph remembering the direct subsets and supersets of each clause,
+ * which are shared by all the formulas containing it (or producing it as a
+ * candidate), instead of rebuilding and interning them for each formula. It
+ * is meant to live for one batch of neighbour computations (see
+ * HasseDiagram.getFormulaParents(Collection, boolean)), and can be queried
+ * concurrently. The returned sets must not be modified.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class MemoizedPowerSetGraph extends PowerSetGraph {
+	private ConcurrentMap<Clause, Set<Clause>> mDominated;
+	private ConcurrentMap<Clause, Set<Clause>> mDominant;
+
+	public MemoizedPowerSetGraph(int nvars) {
+		super(nvars);
+		this.mDominated = new ConcurrentHashMap<Clause, Set<Clause>>();
+		this.mDominant = new ConcurrentHashMap<Clause, Set<Clause>>();
+	}
+
+	@Override
+	public Set<Clause> getDominatedDirectly(Clause c) {
+		Set<Clause> s = this.mDominated.get(c);
+		if (s == null) {
+			s = Collections.unmodifiableSet(super.getDominatedDirectly(c));
+			this.mDominated.put(c, s);
+		}
+		return s;
+	}
+
+	@Override
+	public Set<Clause> getDominantDirectly(Clause c) {
+		Set<Clause> s = this.mDominant.get(c);
+		if (s == null) {
+			s = Collections.unmodifiableSet(super.getDominantDirectly(c));
+			this.mDominant.put(c, s);
+		}
+		return s;
+	}
+}
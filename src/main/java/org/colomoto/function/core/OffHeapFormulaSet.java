@@ -0,0 +1,202 @@
+package org.colomoto.function.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Set of encoded formulas (see {@link FormulaCodec}) kept in direct byte
+ * buffers, outside of the Java heap. It is an open-addressing hash table with
+ * linear probing, where each slot holds the longs of one encoded formula and
+ * an all-zero slot is empty. Slots are split into segments of at most 1GB, so
+ * that the table can grow beyond the 2GB limit of a single buffer.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class OffHeapFormulaSet {
+	private static final int MAX_SEGMENT_BYTES = 1 << 30;
+	private static final long INITIAL_SLOTS = 1 << 12;
+
+	private int words;
+	private int slotBytes;
+	private int maxSegmentBytes;
+	private ByteBuffer[] segments;
+	private int segmentShift;
+	private long capacity;
+	private long size;
+	private boolean hasZero;
+
+	public OffHeapFormulaSet(int words) {
+		this(words, MAX_SEGMENT_BYTES);
+	}
+
+	/**
+	 * @param words           the number of longs of an encoded formula
+	 * @param maxSegmentBytes the maximum size of a segment (a power of two
+	 *                        multiple of the slot size)
+	 */
+	OffHeapFormulaSet(int words, int maxSegmentBytes) {
+		this.words = words;
+		this.slotBytes = words << 3;
+		this.maxSegmentBytes = maxSegmentBytes;
+		this.allocate(INITIAL_SLOTS);
+	}
+
+	/**
+	 * @return the number of buffers the slots are split into
+	 */
+	int getSegments() {
+		return this.segments.length;
+	}
+
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Adds the encoded formula to the set.
+	 *
+	 * @param key
+	 * @return true if it was not yet in the set
+	 */
+	public boolean add(long[] key) {
+		if (isZero(key)) {
+			if (this.hasZero)
+				return false;
+			this.hasZero = true;
+			this.size++;
+			return true;
+		}
+		if ((this.size + 1) << 1 > this.capacity) {
+			this.grow();
+		}
+		if (this.insert(key)) {
+			this.size++;
+			return true;
+		}
+		return false;
+	}
+
+	public boolean contains(long[] key) {
+		if (isZero(key))
+			return this.hasZero;
+		long mask = this.capacity - 1;
+		for (long slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			if (this.isEmptySlot(slot))
+				return false;
+			if (this.slotEquals(slot, key))
+				return true;
+		}
+	}
+
+	/**
+	 * Appends all the encoded formulas of the set to the log.
+	 *
+	 * @param log
+	 * @throws IOException
+	 */
+	public void appendTo(FormulaKeyLog log) throws IOException {
+		long[] key = new long[this.words];
+		if (this.hasZero) {
+			log.append(key);
+		}
+		for (long slot = 0; slot < this.capacity; slot++) {
+			ByteBuffer bb = this.segments[(int) (slot >>> this.segmentShift)];
+			int offset = this.offset(slot);
+			for (int w = 0; w < this.words; w++) {
+				key[w] = bb.getLong(offset + (w << 3));
+			}
+			if (!isZero(key)) {
+				log.append(key);
+			}
+		}
+	}
+
+	private boolean insert(long[] key) {
+		long mask = this.capacity - 1;
+		for (long slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+			if (this.isEmptySlot(slot)) {
+				ByteBuffer bb = this.segments[(int) (slot >>> this.segmentShift)];
+				int offset = this.offset(slot);
+				for (int w = 0; w < this.words; w++) {
+					bb.putLong(offset + (w << 3), key[w]);
+				}
+				return true;
+			}
+			if (this.slotEquals(slot, key))
+				return false;
+		}
+	}
+
+	private void allocate(long slots) {
+		long segmentSlots = Math.min(slots, this.maxSegmentBytes / this.slotBytes);
+		this.segmentShift = Long.numberOfTrailingZeros(segmentSlots);
+		this.segments = new ByteBuffer[(int) (slots / segmentSlots)];
+		for (int i = 0; i < this.segments.length; i++) {
+			this.segments[i] = ByteBuffer.allocateDirect((int) (segmentSlots * this.slotBytes));
+		}
+		this.capacity = slots;
+	}
+
+	private void grow() {
+		ByteBuffer[] oldSegments = this.segments;
+		int oldShift = this.segmentShift;
+		long oldCapacity = this.capacity;
+		this.allocate(oldCapacity << 1);
+		long[] key = new long[this.words];
+		for (long slot = 0; slot < oldCapacity; slot++) {
+			ByteBuffer bb = oldSegments[(int) (slot >>> oldShift)];
+			int offset = (int) ((slot & ((1L << oldShift) - 1)) * this.slotBytes);
+			for (int w = 0; w < this.words; w++) {
+				key[w] = bb.getLong(offset + (w << 3));
+			}
+			if (!isZero(key)) {
+				this.insert(key);
+			}
+		}
+	}
+
+	private int offset(long slot) {
+		return (int) ((slot & ((1L << this.segmentShift) - 1)) * this.slotBytes);
+	}
+
+	private boolean isEmptySlot(long slot) {
+		ByteBuffer bb = this.segments[(int) (slot >>> this.segmentShift)];
+		int offset = this.offset(slot);
+		for (int w = 0; w < this.words; w++) {
+			if (bb.getLong(offset + (w << 3)) != 0L)
+				return false;
+		}
+		return true;
+	}
+
+	private boolean slotEquals(long slot, long[] key) {
+		ByteBuffer bb = this.segments[(int) (slot >>> this.segmentShift)];
+		int offset = this.offset(slot);
+		for (int w = 0; w < this.words; w++) {
+			if (bb.getLong(offset + (w << 3)) != key[w])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isZero(long[] key) {
+		for (long l : key) {
+			if (l != 0L)
+				return false;
+		}
+		return true;
+	}
+
+	private static long hash(long[] key) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (long l : key) {
+			h ^= l;
+			h *= 0xFF51AFD7ED558CCDL;
+			h ^= h >>> 33;
+		}
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+}
@@ -14,6 +14,10 @@ import java.util.Set;
  * the empty set, thus having 2^n - 1 subsets, as well as their inclusion
  * relationships.
  * 
+ * The graph is only built when a method needs it (getIndependent), the direct
+ * subsets/supersets and the maximal independent clauses being computed on the
+ * fly from the clauses themselves, so that large dimensions can be used.
+ * 
  * @author Pedro T. Monteiro
  * @author José R. Cury
  * @author Claudine Chaouiya
@@ -27,10 +31,15 @@ public class PowerSetGraph {
 
 	public PowerSetGraph(int nvars) {
 		this.nvars = nvars;
+	}
+
+	private void buildGraph() {
+		if (this.all != null)
+			return;
 		this.subsetClauses = new HashMap<Clause, Set<Clause>>();
 		this.supersetClauses = new HashMap<Clause, Set<Clause>>();
 		this.all = new HashSet<Clause>();
-		Clause c = new Clause(nvars);
+		Clause c = new Clause(this.nvars).intern();
 		this.supersetClauses.put(c, new HashSet<Clause>());
 		this.buildGraph(c);
 	}
@@ -80,11 +89,8 @@ public class PowerSetGraph {
 	 */
 	private List<Clause> computeSubsets(Clause c) {
 		List<Clause> lSubsets = new ArrayList<Clause>();
-		BitSet bs = c.getSignature();
-		for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
-			BitSet clone = (BitSet) bs.clone();
-			clone.clear(i);
-			lSubsets.add(new Clause(this.nvars, clone));
+		for (int i = c.nextVariable(0); i >= 0; i = c.nextVariable(i + 1)) {
+			lSubsets.add(c.cloneRemove(i));
 		}
 		return lSubsets;
 	}
@@ -96,7 +102,12 @@ public class PowerSetGraph {
 	 * @return
 	 */
 	public Set<Clause> getDominatedDirectly(Clause c) {
-		return this.subsetClauses.get(c);
+		Set<Clause> sSubsets = new HashSet<Clause>();
+		// Cannot have a subset (it'd be the emptyset)
+		if (c.order() > 1) {
+			sSubsets.addAll(this.computeSubsets(c));
+		}
+		return sSubsets;
 	}
 
 	/**
@@ -106,7 +117,13 @@ public class PowerSetGraph {
 	 * @return
 	 */
 	public Set<Clause> getDominantDirectly(Clause c) {
-		return this.supersetClauses.get(c);
+		Set<Clause> sSupersets = new HashSet<Clause>();
+		for (int i = 0; i < this.nvars; i++) {
+			if (!c.isSet(i)) {
+				sSupersets.add(c.cloneAdd(i));
+			}
+		}
+		return sSupersets;
 	}
 
 	private Set<Clause> getDominatedRecursively(Clause c, Set<Clause> sSeen) {
@@ -171,6 +188,7 @@ public class PowerSetGraph {
 	 */
 	public Set<Clause> getIndependent(Set<Clause> sClauses) {
 //System.out.println("getIndependent: " + sClauses);
+		this.buildGraph();
 		// Get Dependent
 		Set<Clause> sDependent = new HashSet<Clause>();
 		for (Clause c : sClauses) {
@@ -188,6 +206,121 @@ public class PowerSetGraph {
 		return sDiff;
 	}
 
+	/**
+	 * Same as getMaximal(getIndependent(sClauses)), without building the powerset
+	 * graph. A clause is independent iff it contains no clause of sClauses and
+	 * is not contained in one. The maximal ones are thus the maximal sets
+	 * containing no clause of sClauses, i.e. the complements of the minimal
+	 * transversals of sClauses, which are not contained in a clause of sClauses.
+	 * 
+	 * @param sClauses
+	 * @return
+	 */
+	public Set<Clause> getMaximalIndependent(Set<Clause> sClauses) {
+		BitSet universe = new BitSet(this.nvars);
+		universe.set(0, this.nvars);
+		List<BitSet> lEdges = new ArrayList<BitSet>();
+		for (Clause c : sClauses) {
+			lEdges.add(c.getSignature());
+		}
+		Set<Clause> sMaximal = new HashSet<Clause>();
+		for (BitSet transversal : getMinimalTransversals(lEdges)) {
+			BitSet bs = (BitSet) universe.clone();
+			bs.andNot(transversal);
+			if (bs.isEmpty())
+				continue;
+			Clause c = new Clause(this.nvars, bs).intern();
+			if (!c.isContainedIn(sClauses) && !sClauses.contains(c)) {
+				sMaximal.add(c);
+			}
+		}
+		return sMaximal;
+	}
+
+	/**
+	 * Same as cSigma.isContainedIn(getIndependent(sClauses)), without building
+	 * the powerset graph. Such an independent clause exists iff a maximal set
+	 * strictly containing cSigma and no clause of sClauses is not contained in a
+	 * clause of sClauses.
+	 * 
+	 * @param cSigma
+	 * @param sClauses
+	 * @return
+	 */
+	public boolean hasIndependentSuperset(Clause cSigma, Set<Clause> sClauses) {
+		BitSet sigma = cSigma.getSignature();
+		List<BitSet> lEdges = new ArrayList<BitSet>();
+		for (Clause c : sClauses) {
+			BitSet edge = c.getSignature();
+			edge = (BitSet) edge.clone();
+			edge.andNot(sigma);
+			if (edge.isEmpty()) {
+				// cSigma already contains c
+				return false;
+			}
+			lEdges.add(edge);
+		}
+		BitSet universe = new BitSet(this.nvars);
+		universe.set(0, this.nvars);
+		universe.andNot(sigma);
+		for (BitSet transversal : getMinimalTransversals(lEdges)) {
+			BitSet bs = (BitSet) universe.clone();
+			bs.andNot(transversal);
+			if (bs.isEmpty())
+				continue;
+			bs.or(sigma);
+			Clause c = new Clause(this.nvars, bs);
+			if (!c.isContainedIn(sClauses) && !sClauses.contains(c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes the minimal transversals (hitting sets) of a set of non-empty
+	 * edges, adding one edge at a time (Berge's algorithm).
+	 * 
+	 * @param lEdges
+	 * @return
+	 */
+	private static List<BitSet> getMinimalTransversals(List<BitSet> lEdges) {
+		List<BitSet> lTransversals = new ArrayList<BitSet>();
+		lTransversals.add(new BitSet());
+		for (BitSet edge : lEdges) {
+			Set<BitSet> sNext = new HashSet<BitSet>();
+			for (BitSet t : lTransversals) {
+				if (t.intersects(edge)) {
+					sNext.add(t);
+				} else {
+					for (int i = edge.nextSetBit(0); i >= 0; i = edge.nextSetBit(i + 1)) {
+						BitSet tNew = (BitSet) t.clone();
+						tNew.set(i);
+						sNext.add(tNew);
+					}
+				}
+			}
+			lTransversals.clear();
+			for (BitSet t : sNext) {
+				boolean bMinimal = true;
+				for (BitSet u : sNext) {
+					if (u != t && u.cardinality() < t.cardinality()) {
+						BitSet diff = (BitSet) u.clone();
+						diff.andNot(t);
+						if (diff.isEmpty()) {
+							bMinimal = false;
+							break;
+						}
+					}
+				}
+				if (bMinimal) {
+					lTransversals.add(t);
+				}
+			}
+		}
+		return lTransversals;
+	}
+
 	/**
 	 * Given a set of clauses, it finds the subset of clauses that are minimal
 	 * 
@@ -237,6 +370,7 @@ public class PowerSetGraph {
 	}
 
 	public String toString() {
+		this.buildGraph();
 		String s = "";
 		for (Clause c : this.all) {
 			s += c + "\tSuper: " + this.supersetClauses.get(c) + "\tSub: " + this.subsetClauses.get(c) + "\n";
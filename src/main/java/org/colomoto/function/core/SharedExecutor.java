@@ -0,0 +1,75 @@
+package org.colomoto.function.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fixed pool of daemon threads, one per core, created on first use and then
+ * shared by all the computations of a kind, so that they do not pay for
+ * starting threads and an idle pool does not keep the JVM alive. Kinds of
+ * computations that wait on each other must use distinct pools.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class SharedExecutor {
+	private String name;
+	private ExecutorService executor;
+
+	public SharedExecutor(String name) {
+		this.name = name;
+	}
+
+	public synchronized ExecutorService get() {
+		if (this.executor == null) {
+			this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, name);
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		return this.executor;
+	}
+
+	/**
+	 * Waits for the results of all the futures, in order. If the calling thread
+	 * is interrupted, or if a task fails, the outstanding futures are cancelled,
+	 * so that they stop occupying the pool.
+	 *
+	 * @param lFutures
+	 * @param what     the computation, for error messages
+	 * @return
+	 */
+	public static <T> List<T> getAll(List<Future<T>> lFutures, String what) {
+		List<T> lResults = new ArrayList<T>(lFutures.size());
+		try {
+			for (Future<T> future : lFutures) {
+				lResults.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			cancelAll(lFutures);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted " + what, e);
+		} catch (ExecutionException e) {
+			cancelAll(lFutures);
+			throw new IllegalStateException("Failed " + what, e.getCause());
+		}
+		return lResults;
+	}
+
+	private static <T> void cancelAll(List<Future<T>> lFutures) {
+		for (Future<T> future : lFutures) {
+			future.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package org.colomoto.function.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Frontier of encoded formulas (see {@link FormulaCodec}) still to be
+ * explored. Formulas are kept in a direct byte buffer of a fixed size; when it
+ * is full, its content is appended to a temporary spill file, and read back in
+ * blocks once the buffer is empty again. The exploration order does not
+ * matter, so it behaves as a stack, which avoids rewriting the file.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class SpillingFormulaQueue {
+	private int words;
+	private int slotBytes;
+	private ByteBuffer buffer;
+	private int bufferKeys;
+	private int top;
+	private File spillDir;
+	private File spillFile;
+	private FileChannel spillChannel;
+	private long spilled;
+
+	/**
+	 * @param words       the number of longs of an encoded formula
+	 * @param memoryBytes the size of the in-memory buffer
+	 * @param spillDir    the directory of the spill file, or null for the
+	 *                    default temporary directory
+	 */
+	public SpillingFormulaQueue(int words, long memoryBytes, File spillDir) {
+		this.words = words;
+		this.slotBytes = words << 3;
+		this.bufferKeys = (int) Math.max(1, Math.min(memoryBytes, Integer.MAX_VALUE) / this.slotBytes);
+		this.buffer = ByteBuffer.allocateDirect(this.bufferKeys * this.slotBytes);
+		this.spillDir = spillDir;
+	}
+
+	public boolean isEmpty() {
+		return this.top == 0 && this.spilled == 0;
+	}
+
+	public long size() {
+		return this.top + this.spilled;
+	}
+
+	/**
+	 * @return the number of formulas currently written to the spill file
+	 */
+	public long getSpilled() {
+		return this.spilled;
+	}
+
+	public void push(long[] key) throws IOException {
+		if (this.top == this.bufferKeys) {
+			this.spill();
+		}
+		int offset = this.top * this.slotBytes;
+		for (int w = 0; w < this.words; w++) {
+			this.buffer.putLong(offset + (w << 3), key[w]);
+		}
+		this.top++;
+	}
+
+	/**
+	 * Removes a formula from the frontier.
+	 *
+	 * @param key where the encoded formula is written to
+	 * @return false if the frontier is empty
+	 * @throws IOException
+	 */
+	public boolean pop(long[] key) throws IOException {
+		if (this.top == 0) {
+			if (this.spilled == 0)
+				return false;
+			this.unspill();
+		}
+		this.top--;
+		int offset = this.top * this.slotBytes;
+		for (int w = 0; w < this.words; w++) {
+			key[w] = this.buffer.getLong(offset + (w << 3));
+		}
+		return true;
+	}
+
+	/**
+	 * Writes all the encoded formulas of the frontier, one after the other,
+	 * leaving the frontier unchanged. The spilled formulas are copied directly
+	 * from the spill file.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(FileChannel out) throws IOException {
+		long end = this.spilled * this.slotBytes;
+		for (long pos = 0; pos < end;) {
+			pos += this.spillChannel.transferTo(pos, end - pos, out);
+		}
+		ByteBuffer bb = this.buffer.duplicate();
+		bb.position(0);
+		bb.limit(this.top * this.slotBytes);
+		while (bb.hasRemaining()) {
+			out.write(bb);
+		}
+	}
+
+	private void spill() throws IOException {
+		if (this.spillChannel == null) {
+			this.spillFile = File.createTempFile("functionhood", ".spill", this.spillDir);
+			this.spillFile.deleteOnExit();
+			this.spillChannel = new RandomAccessFile(this.spillFile, "rw").getChannel();
+		}
+		ByteBuffer bb = this.buffer.duplicate();
+		bb.position(0);
+		bb.limit(this.top * this.slotBytes);
+		long pos = this.spilled * this.slotBytes;
+		while (bb.hasRemaining()) {
+			pos += this.spillChannel.write(bb, pos);
+		}
+		this.spilled += this.top;
+		this.top = 0;
+	}
+
+	private void unspill() throws IOException {
+		int n = (int) Math.min(this.spilled, this.bufferKeys);
+		this.spilled -= n;
+		ByteBuffer bb = this.buffer.duplicate();
+		bb.position(0);
+		bb.limit(n * this.slotBytes);
+		long pos = this.spilled * this.slotBytes;
+		while (bb.hasRemaining()) {
+			int read = this.spillChannel.read(bb, pos);
+			if (read < 0)
+				throw new IOException("Truncated spill file " + this.spillFile);
+			pos += read;
+		}
+		this.top = n;
+	}
+
+	/**
+	 * Releases the spill file, if any.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (this.spillChannel != null) {
+			this.spillChannel.close();
+			this.spillFile.delete();
+			this.spillChannel = null;
+		}
+		this.top = 0;
+		this.spilled = 0;
+	}
+}
@@ -0,0 +1,104 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that sparse and dense clauses behave as the bit vectors they stand
+ * for, in dimensions where both representations are used.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class ClauseTest {
+	private static final int CLAUSES = 200;
+
+	@Test
+	public void testRepresentations16() {
+		checkRepresentations(16);
+	}
+
+	@Test
+	public void testRepresentations64() {
+		checkRepresentations(64);
+	}
+
+	@Test
+	public void testRepresentations100() {
+		checkRepresentations(100);
+	}
+
+	private static void checkRepresentations(int nvars) {
+		Random random = new Random(nvars);
+		List<BitSet> lSignatures = new ArrayList<BitSet>();
+		List<Clause> lClauses = new ArrayList<Clause>();
+		int sparse = 0;
+		for (int k = 0; k < CLAUSES; k++) {
+			// mostly small clauses, so that both representations show up
+			int order = 1 + random.nextInt((k % 2 == 0) ? Math.max(1, nvars / 8) : nvars);
+			BitSet bs = new BitSet(nvars);
+			while (bs.cardinality() < order) {
+				bs.set(random.nextInt(nvars));
+			}
+			int[] vars = new int[order];
+			for (int i = bs.nextSetBit(0), j = 0; i >= 0; i = bs.nextSetBit(i + 1)) {
+				vars[j++] = i;
+			}
+			Clause c = new Clause(nvars, (BitSet) bs.clone());
+			Clause cVars = new Clause(nvars, vars);
+			assertEquals(c.isSparse(), cVars.isSparse());
+			assertEquals(c, cVars);
+			assertEquals(bs.hashCode(), c.hashCode());
+			assertEquals(bs.hashCode(), cVars.hashCode());
+			assertEquals(bs, c.getSignature());
+			assertEquals(order, c.order());
+			for (int i = 0; i < nvars; i++) {
+				assertEquals(bs.get(i), c.isSet(i));
+				assertEquals(bs.nextSetBit(i), c.nextVariable(i));
+			}
+			if (c.isSparse())
+				sparse++;
+			lSignatures.add(bs);
+			lClauses.add(c);
+		}
+		assertTrue(sparse > 0 && sparse < CLAUSES);
+
+		// all pairs, including sparse/dense ones
+		for (int i = 0; i < CLAUSES; i++) {
+			for (int j = 0; j < CLAUSES; j++) {
+				BitSet bsi = lSignatures.get(i);
+				BitSet bsj = lSignatures.get(j);
+				Clause ci = lClauses.get(i);
+				Clause cj = lClauses.get(j);
+				BitSet diff = (BitSet) bsj.clone();
+				diff.andNot(bsi);
+				assertEquals(bsi.equals(bsj), ci.equals(cj));
+				assertEquals(diff.isEmpty(), ci.dominatesOrEqualTo(cj));
+				assertEquals(diff.isEmpty() && !bsi.equals(bsj), ci.dominatesStrictly(cj));
+				assertEquals(ci.dominatesOrEqualTo(cj), cj.dominatedOrEqualTo(ci));
+			}
+		}
+	}
+
+	@Test
+	public void testInternAcrossRepresentations() {
+		Clause c = new Clause(64, new int[] { 3, 17, 40 }).intern();
+		BitSet bs = new BitSet(64);
+		bs.set(3);
+		bs.set(17);
+		bs.set(40);
+		assertTrue(c.isSparse());
+		assertTrue(c == new Clause(64, bs).intern());
+		assertTrue(c.cloneAdd(5).isSparse());
+		assertEquals(4, c.cloneAdd(5).order());
+		assertEquals(2, c.cloneRemove(17).order());
+	}
+}
@@ -0,0 +1,111 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaExplorerTest {
+
+	@Test
+	public void testDescendantsWithSmallFrontier() throws IOException {
+		HasseDiagram hd = new HasseDiagram(4);
+		Formula f = hd.genBottomFormula();
+		Set<Formula> sTop = hd.getFormulaAncestors(f, false);
+		// a maximal formula, from which all the diagram is below
+		for (Formula fTop : sTop) {
+			if (hd.getFormulaParents(fTop, false).isEmpty()) {
+				f = fTop;
+			}
+		}
+		for (long budget : new long[] { 16, 64 }) {
+			FormulaExplorer fe = hd.exploreFormulaDescendants(f, false, budget);
+			assertEquals(hd.getFormulaDescendants(f, false), drain(fe));
+			assertEquals(hd.getFormulaDescendants(f, false).size(), fe.getNumberReturned());
+		}
+	}
+
+	@Test
+	public void testAncestorsWithSmallFrontier() throws IOException {
+		for (int n = 2; n <= 4; n++) {
+			HasseDiagram hd = new HasseDiagram(n);
+			Formula f = hd.genBottomFormula();
+			for (long budget : new long[] { 16, 64 }) {
+				FormulaExplorer fe = hd.exploreFormulaAncestors(f, false, budget);
+				assertEquals(hd.getFormulaAncestors(f, false), drain(fe));
+			}
+		}
+	}
+
+	@Test
+	public void testCheckpointResume() throws IOException {
+		HasseDiagram hd = new HasseDiagram(4);
+		Formula f = hd.genBottomFormula();
+		Set<Formula> sExpected = hd.getFormulaAncestors(f, false);
+		File checkpoint = File.createTempFile("functionhood", ".ckpt");
+		File log = new File(checkpoint.getPath() + ".log");
+		try {
+			FormulaExplorer fe = hd.exploreFormulaAncestors(f, false, 32);
+			fe.setCheckpoint(checkpoint, Long.MAX_VALUE);
+			Set<Formula> sFound = new HashSet<Formula>();
+			// checkpoints along the way, then some progress lost by a "crash"
+			for (int i = 0; i < 60; i++) {
+				sFound.add(fe.next());
+				if (i % 20 == 0)
+					fe.checkpoint();
+			}
+			fe.checkpoint();
+			long returned = fe.getNumberReturned();
+			for (int i = 0; i < 10; i++) {
+				fe.next();
+			}
+			fe.close();
+
+			fe = hd.resumeExploration(checkpoint, 32);
+			assertEquals(returned, fe.getNumberReturned());
+			sFound.addAll(drain(fe));
+			assertEquals(sExpected, sFound);
+			assertEquals(sExpected.size(), fe.getNumberReturned());
+		} finally {
+			checkpoint.delete();
+			log.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEncodingLimit() {
+		new FormulaCodec(FormulaCodec.MAX_VARS + 1);
+	}
+
+	@Test
+	public void testEncodingRoundTrip() throws Exception {
+		FormulaCodec codec = new FormulaCodec(7);
+		Formula f = FormulaParser.parseFormula(7, "{{1,7},{2,3,6},{4,5}}");
+		long[] key = codec.newKey();
+		codec.encode(f, key);
+		assertEquals(2, key.length);
+		assertEquals(f, codec.decode(key));
+	}
+
+	private static Set<Formula> drain(FormulaExplorer fe) throws IOException {
+		Set<Formula> sFound = new HashSet<Formula>();
+		try {
+			while (fe.hasNext()) {
+				assertTrue(sFound.add(fe.next()));
+			}
+		} finally {
+			fe.close();
+		}
+		return sFound;
+	}
+}
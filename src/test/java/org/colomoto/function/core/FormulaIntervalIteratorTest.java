@@ -0,0 +1,94 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Compares the intervals enumerated by HasseDiagram with the functions of
+ * ReferenceHasseDiagram between both bounds.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaIntervalIteratorTest {
+	private static final int SAMPLES = 300;
+
+	@Test
+	public void testAgainstReference() {
+		for (int n = 2; n <= ReferenceHasseDiagram.MAX_VARS; n++) {
+			HasseDiagram hd = new HasseDiagram(n);
+			for (boolean degenerated : new boolean[] { false, true }) {
+				List<Formula> lFormulas = new ReferenceHasseDiagram(n, degenerated).getFormulas();
+				Random random = new Random(n);
+				int empty = 0;
+				for (int k = 0; k < SAMPLES; k++) {
+					Formula fLow = lFormulas.get(random.nextInt(lFormulas.size()));
+					Formula fHigh = lFormulas.get(random.nextInt(lFormulas.size()));
+					if (k % 2 == 0) {
+						// make most intervals non-empty, with fHigh above fLow
+						fHigh = lFormulas.get(lFormulas.size() - 1 - random.nextInt(1 + lFormulas.size() / 8));
+					}
+					Set<Formula> sExpected = new HashSet<Formula>();
+					if (fLow.isBelowOrEqualTo(fHigh)) {
+						for (Formula g : lFormulas) {
+							if (fLow.isBelowOrEqualTo(g) && g.isBelowOrEqualTo(fHigh))
+								sExpected.add(g);
+						}
+					} else {
+						empty++;
+					}
+					List<Formula> lInterval = toList(hd.getFormulaInterval(fLow, fHigh, degenerated));
+					String what = "n=" + n + (degenerated ? " degenerated " : " ") + fLow + " " + fHigh;
+					assertEquals(what, sExpected, new HashSet<Formula>(lInterval));
+					// each formula exactly once
+					assertEquals(what, sExpected.size(), lInterval.size());
+				}
+				assertTrue(empty > 0 && empty < SAMPLES);
+			}
+		}
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		HasseDiagram hd = new HasseDiagram(3);
+		Formula fLow = FormulaParser.parseFormula(3, "{{1},{2,3}}");
+		Formula fHigh = FormulaParser.parseFormula(3, "{{1,2},{3}}");
+		assertFalse(fLow.isBelowOrEqualTo(fHigh));
+		Iterator<Formula> it = hd.getFormulaInterval(fLow, fHigh, false);
+		assertFalse(it.hasNext());
+		try {
+			it.next();
+			fail();
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSingleton() throws Exception {
+		HasseDiagram hd = new HasseDiagram(3);
+		Formula f = FormulaParser.parseFormula(3, "{{1},{2,3}}");
+		assertEquals(1, toList(hd.getFormulaInterval(f, f, false)).size());
+	}
+
+	private static List<Formula> toList(Iterator<Formula> it) {
+		List<Formula> l = new ArrayList<Formula>();
+		while (it.hasNext()) {
+			l.add(it.next());
+		}
+		return l;
+	}
+}
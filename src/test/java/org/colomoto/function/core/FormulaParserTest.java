@@ -0,0 +1,104 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParseException;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaParserTest {
+
+	@Test
+	public void testWhitespace() throws Exception {
+		assertEquals(FormulaParser.parseFormula(4, "{{1,2},{3}}"),
+				FormulaParser.parseFormula(4, " {{ 1 , 2 } ,\n\t{ 3 } } "));
+		assertEquals(FormulaParser.parseClause(4, "{2,4}"), FormulaParser.parseClause(4, "{ 4,\n2 }"));
+	}
+
+	@Test
+	public void testErrorOffsets() {
+		assertError("{{1,5}}", 4);
+		assertError("{{0}}", 2);
+		// the offset is the start of the variable, not its last digit
+		assertError("{{12}}", 2);
+		assertError("{}", 1);
+		assertError("{{}}", 2);
+		assertError("{{1},{2}} x", 10);
+		assertError("{{1}}}", 5);
+		// unterminated input: the offset is the end of the input
+		assertError("{{1},{2}", 8);
+		assertError("{{1,2", 5);
+		assertError("", 0);
+	}
+
+	@Test
+	public void testErrorLine() {
+		try {
+			FormulaParser.parseFormula(4, "{{1},\n {2,\n  7}}");
+			fail();
+		} catch (ParseException e) {
+			assertEquals(13, e.getErrorOffset());
+			assertTrue(e.getMessage(), e.getMessage().contains("line 3, column 3"));
+		}
+	}
+
+	@Test
+	public void testMappedFile() throws Exception {
+		File file = File.createTempFile("functionhood", ".txt");
+		try {
+			write(file, "{{1,2},{3}}\n{{1},{2},{3},{4}}\n\n  {{1,2,3,4}}\n");
+			FormulaParser fp = FormulaParser.open(4, file);
+			assertTrue(fp.hasNext());
+			assertEquals(FormulaParser.parseFormula(4, "{{3},{1,2}}"), fp.next());
+			assertEquals(11, fp.getPosition());
+			assertTrue(fp.hasNext());
+			assertEquals(FormulaParser.parseFormula(4, "{{1},{2},{3},{4}}"), fp.next());
+			assertTrue(fp.hasNext());
+			assertEquals(new HasseDiagram(4).genBottomFormula(), fp.next());
+			assertFalse(fp.hasNext());
+
+			write(file, "{{1}}\n{{2},{5}}\n");
+			fp = FormulaParser.open(4, file);
+			fp.next();
+			try {
+				fp.next();
+				fail();
+			} catch (ParseException e) {
+				assertEquals(12, e.getErrorOffset());
+				assertTrue(e.getMessage(), e.getMessage().contains("line 2, column 7"));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void assertError(String s, int offset) {
+		try {
+			FormulaParser.parseFormula(4, s);
+			fail(s);
+		} catch (ParseException e) {
+			assertEquals(s + ": " + e.getMessage(), offset, e.getErrorOffset());
+		}
+	}
+
+	private static void write(File file, String s) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(s.getBytes("US-ASCII"));
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaTest {
+
+	@Test
+	public void testIntern() throws Exception {
+		Formula f1 = FormulaParser.parseFormula(4, "{{1,2},{3,4}}");
+		Formula f2 = new FormulaCodec(4).decode(key(f1));
+		assertNotSame(f1, f2);
+		assertEquals(f1, f2);
+		assertSame(f1, f2.intern());
+		for (Clause c : f2.intern().getClauses()) {
+			assertSame(c, c.intern());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testInternedIsImmutable() throws Exception {
+		Formula f = FormulaParser.parseFormula(3, "{{1,2},{2,3}}").intern();
+		f.addClause(FormulaParser.parseClause(3, "{1,3}"));
+	}
+
+	@Test
+	public void testHashSpread() throws IOException {
+		HasseDiagram hd = new HasseDiagram(5);
+		FormulaExplorer fe = hd.exploreFormulaAncestors(hd.genBottomFormula(), false, 1 << 20);
+		Set<Integer> sHashes = new HashSet<Integer>();
+		try {
+			while (fe.hasNext()) {
+				sHashes.add(fe.next().hashCode());
+			}
+		} finally {
+			fe.close();
+		}
+		// all the 6894 formulas, allowing for a few collisions
+		assertEquals(6894, fe.getNumberReturned());
+		assertTrue(sHashes.size() > 6800);
+	}
+
+	private static long[] key(Formula f) {
+		FormulaCodec codec = new FormulaCodec(4);
+		long[] key = codec.newKey();
+		codec.encode(f, key);
+		return key;
+	}
+}
@@ -0,0 +1,32 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class FormulaWriterTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Formula f = FormulaParser.parseFormula(12, "{{1,12},{2,3,10},{4,5,11}}");
+		StringWriter out = new StringWriter();
+		new FormulaWriter().write(out, f);
+		assertEquals(f.toString(), out.toString());
+		assertEquals(f, FormulaParser.parseFormula(12, out.toString()));
+	}
+
+	@Test
+	public void testClause() throws Exception {
+		Clause c = FormulaParser.parseClause(20, "{20,1,9,10}");
+		StringWriter out = new StringWriter();
+		FormulaWriter.append(out, c);
+		assertEquals("{1,9,10,20}", out.toString());
+	}
+}
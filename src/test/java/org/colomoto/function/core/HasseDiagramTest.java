@@ -0,0 +1,230 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Differential test of HasseDiagram against the brute-force
+ * ReferenceHasseDiagram: for each dimension up to 5 and both degenerate modes,
+ * the parents and children of every function are computed by both engines.
+ * The time spent by each engine is logged per dimension.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class HasseDiagramTest {
+	private static final int MAX_VARS = ReferenceHasseDiagram.MAX_VARS;
+
+	/**
+	 * Known wrong children: Rule 4 misses or adds children of non-degenerate
+	 * formulas, and degenerate children are not computed yet (Rule 3 always
+	 * requires consistency). The resource lists, per dimension and degenerate
+	 * mode, the truth tables of the formulas whose children are wrong. Any
+	 * formula entering or leaving this list fails the test, so that the list
+	 * is updated (only shrunk) as the rules are fixed.
+	 */
+	private static final String KNOWN_BAD_CHILDREN = "known-bad-children.txt";
+
+	@Test
+	public void testNeighbours() throws IOException {
+		Map<String, Set<Long>> mKnownBad = loadKnownBadChildren();
+		System.out.println("n\tdegen\tfuncs\tref(ms)\tparents(ms)\tchildren(ms)\tbad parents\tbad children");
+		for (int n = 2; n <= MAX_VARS; n++) {
+			HasseDiagram hd = new HasseDiagram(n);
+			for (boolean degenerated : new boolean[] { false, true }) {
+				long t0 = System.nanoTime();
+				ReferenceHasseDiagram ref = new ReferenceHasseDiagram(n, degenerated);
+				long tRef = System.nanoTime() - t0;
+
+				long tParents = 0, tChildren = 0;
+				int badParents = 0;
+				Set<Long> sBadChildren = new HashSet<Long>();
+				for (Formula f : ref.getFormulas()) {
+					t0 = System.nanoTime();
+					Set<Formula> sParents = hd.getFormulaParents(f, degenerated);
+					tParents += System.nanoTime() - t0;
+					t0 = System.nanoTime();
+					Set<Formula> sChildren = hd.getFormulaChildren(f, degenerated);
+					tChildren += System.nanoTime() - t0;
+					assertEquals(f.toString(), sParents.size(), hd.countFormulaParents(f, degenerated));
+					assertEquals(f.toString(), sChildren.size(), hd.countFormulaChildren(f, degenerated));
+
+					if (!sParents.equals(ref.getFormulaParents(f))) {
+						badParents++;
+					}
+					if (!sChildren.equals(ref.getFormulaChildren(f))) {
+						sBadChildren.add(DownSetCounter.truthTable(n, f));
+					}
+				}
+				System.out.println(n + "\t" + degenerated + "\t" + ref.getSize() + "\t" + tRef / 1000000 + "\t"
+						+ tParents / 1000000 + "\t" + tChildren / 1000000 + "\t" + badParents + "\t"
+						+ sBadChildren.size());
+				String what = "n=" + n + (degenerated ? " degenerated" : "");
+				assertEquals("parents, " + what, 0, badParents);
+				Set<Long> sKnownBad = mKnownBad.get(n + " " + degenerated);
+				if (sKnownBad == null) {
+					sKnownBad = new HashSet<Long>();
+				}
+				assertSubset("wrong children, " + what, sKnownBad, sBadChildren);
+				assertSubset("fixed children (to remove from " + KNOWN_BAD_CHILDREN + "), " + what, sBadChildren,
+						sKnownBad);
+			}
+		}
+	}
+
+	/**
+	 * Fails, listing the first offending truth tables, if some element of
+	 * sTables is not in sExpected.
+	 */
+	private static void assertSubset(String msg, Set<Long> sExpected, Set<Long> sTables) {
+		StringBuilder sb = new StringBuilder();
+		int unexpected = 0;
+		for (long table : sTables) {
+			if (!sExpected.contains(table) && unexpected++ < 10) {
+				sb.append(' ').append(Long.toHexString(table));
+			}
+		}
+		assertTrue(msg + ": " + unexpected + " formulas, e.g." + sb, unexpected == 0);
+	}
+
+	/**
+	 * Reads the lines "n degenerated table" (table in hexadecimal) of the known
+	 * bad children resource.
+	 */
+	private static Map<String, Set<Long>> loadKnownBadChildren() throws IOException {
+		Map<String, Set<Long>> mKnownBad = new HashMap<String, Set<Long>>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				HasseDiagramTest.class.getResourceAsStream(KNOWN_BAD_CHILDREN), "US-ASCII"));
+		try {
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split(" ");
+				String key = fields[0] + " " + fields[1];
+				Set<Long> sTables = mKnownBad.get(key);
+				if (sTables == null) {
+					sTables = new HashSet<Long>();
+					mKnownBad.put(key, sTables);
+				}
+				sTables.add(Long.parseLong(fields[2], 16));
+			}
+		} finally {
+			in.close();
+		}
+		return mKnownBad;
+	}
+
+	/**
+	 * Neighbours of formulas with few small clauses in a dimension far beyond
+	 * the power set graph, where the clauses are sparse. The parents add the
+	 * maximal false points of f, the children remove its minimal true point.
+	 */
+	@Test
+	public void testLargeDimension() throws Exception {
+		int n = 64;
+		HasseDiagram hd = new HasseDiagram(n);
+		Formula f = FormulaParser.parseFormula(n, "{{1}}");
+		for (boolean degenerated : new boolean[] { false, true }) {
+			assertEquals(set(FormulaParser.parseFormula(n, "{{1}," + range(2, n) + "}")),
+					hd.getFormulaParents(f, degenerated));
+		}
+		Set<Formula> sChildren = new HashSet<Formula>();
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 2; i <= n; i++) {
+			sb.append((i > 2) ? "," : "").append("{1,").append(i).append('}');
+		}
+		sChildren.add(FormulaParser.parseFormula(n, sb.append('}')));
+		assertEquals(sChildren, hd.getFormulaChildren(f, false));
+
+		f = FormulaParser.parseFormula(n, "{{1},{2,3}}");
+		for (boolean degenerated : new boolean[] { false, true }) {
+			assertEquals(set(FormulaParser.parseFormula(n, "{{1},{2,3},{2," + range(4, n).substring(1) + "}"),
+					FormulaParser.parseFormula(n, "{{1},{2,3},{3," + range(4, n).substring(1) + "}")),
+					hd.getFormulaParents(f, degenerated));
+		}
+	}
+
+	private static Set<Formula> set(Formula... formulas) {
+		return new HashSet<Formula>(Arrays.asList(formulas));
+	}
+
+	// the clause {from,...,to}
+	private static String range(int from, int to) {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = from; i <= to; i++) {
+			sb.append((i > from) ? "," : "").append(i);
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Batches large enough to be split in chunks, with each formula given
+	 * twice, give the same neighbours as the per-formula calls.
+	 */
+	@Test
+	public void testBatch() throws IOException {
+		HasseDiagram hd = new HasseDiagram(5);
+		for (boolean degenerated : new boolean[] { false, true }) {
+			List<Formula> lFormulas = new ArrayList<Formula>();
+			FormulaExplorer fe = hd.exploreFormulaAncestors(hd.genBottomFormula(), degenerated, 1 << 20);
+			try {
+				while (fe.hasNext() && lFormulas.size() < 4 * HasseDiagram.BATCH_MIN_CHUNK) {
+					lFormulas.add(fe.next());
+				}
+			} finally {
+				fe.close();
+			}
+			lFormulas.addAll(new ArrayList<Formula>(lFormulas));
+
+			Map<Formula, Set<Formula>> mParents = hd.getFormulaParents(lFormulas, degenerated);
+			Map<Formula, Set<Formula>> mChildren = hd.getFormulaChildren(lFormulas, degenerated);
+			assertEquals(lFormulas.size() / 2, mParents.size());
+			assertEquals(lFormulas.size() / 2, mChildren.size());
+			for (Formula f : lFormulas) {
+				assertEquals(hd.getFormulaParents(f, degenerated), mParents.get(f));
+				assertEquals(hd.getFormulaChildren(f, degenerated), mChildren.get(f));
+			}
+		}
+	}
+
+	@Test
+	public void testCountDescendants() {
+		for (int n = 2; n <= MAX_VARS; n++) {
+			HasseDiagram hd = new HasseDiagram(n);
+			for (boolean degenerated : new boolean[] { false, true }) {
+				List<Formula> lFormulas = new ReferenceHasseDiagram(n, degenerated).getFormulas();
+				for (Formula f : lFormulas) {
+					int below = 0;
+					for (Formula g : lFormulas) {
+						if (g.isBelowOrEqualTo(f))
+							below++;
+					}
+					assertEquals(f.toString(), below, hd.countFormulaDescendants(f, degenerated));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCountAll() throws Exception {
+		// the number of nodes of the whole diagram, below the top formula
+		assertEquals(7785062L, new HasseDiagram(6).countFormulaDescendants(
+				FormulaParser.parseFormula(6, "{{1},{2},{3},{4},{5},{6}}"), false));
+		assertEquals(2414627396434L, new HasseDiagram(7).countFormulaDescendants(
+				FormulaParser.parseFormula(7, "{{1},{2},{3},{4},{5},{6},{7}}"), false));
+	}
+}
@@ -0,0 +1,130 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class HasseGraphSinkTest {
+	// n=4: 114 nodes, 292 covering edges
+	private static final int NODES = 114;
+	private static final int EDGES = 292;
+	// formulas explored at n=6
+	private static final int EXPLORED = 5000;
+
+	@Test
+	public void testDot() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		export(new DotGraphSink(Channels.newChannel(out)));
+		String s = out.toString("US-ASCII");
+		assertTrue(s.startsWith("digraph hasse {\n"));
+		assertTrue(s.endsWith("}\n"));
+		assertEquals(EDGES, count(s, " -> "));
+		assertEquals(NODES + EDGES, count(s, ";\n"));
+	}
+
+	@Test
+	public void testGraphML() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		export(new GraphMLGraphSink(Channels.newChannel(out)));
+		String s = out.toString("US-ASCII");
+		assertTrue(s.endsWith("</graphml>\n"));
+		assertEquals(NODES, count(s, "<node "));
+		assertEquals(EDGES, count(s, "<edge "));
+	}
+
+	@Test
+	public void testBinaryEdgeList() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		export(new BinaryEdgeListSink(Channels.newChannel(out), 4));
+		ByteBuffer bb = ByteBuffer.wrap(out.toByteArray());
+		assertEquals(BinaryEdgeListSink.MAGIC, bb.getInt());
+		assertEquals(BinaryEdgeListSink.VERSION, bb.getInt());
+		assertEquals(4, bb.getInt());
+		int words = bb.getInt();
+		int nodes = 0, edges = 0;
+		while (bb.hasRemaining()) {
+			if (bb.get() == BinaryEdgeListSink.NODE) {
+				nodes++;
+				bb.position(bb.position() + 8 * words);
+			} else {
+				edges++;
+				bb.position(bb.position() + 16 * words);
+			}
+		}
+		assertEquals(NODES, nodes);
+		assertEquals(EDGES, edges);
+	}
+
+	/**
+	 * Node and edge lines must name a formula the same way. At n=6 many
+	 * formulas have colliding clause hashes, so their clause sets iterate in
+	 * different orders depending on how they were built (decoded nodes vs.
+	 * computed neighbours). The exploration is partial, so only the endpoints
+	 * that are explored formulas are checked against the node identifiers.
+	 */
+	@Test
+	public void testDotIdentifiers() throws Exception {
+		HasseDiagram hd = new HasseDiagram(6);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DotGraphSink sink = new DotGraphSink(Channels.newChannel(out));
+		FormulaExplorer fe = hd.exploreFormulaAncestors(hd.genBottomFormula(), false, 1 << 20);
+		fe.setGraphSink(sink);
+		for (int i = 0; i < EXPLORED && fe.hasNext(); i++) {
+			fe.next();
+		}
+		fe.close();
+		sink.close();
+
+		Set<String> sIds = new HashSet<String>();
+		Set<Formula> sExplored = new HashSet<Formula>();
+		String[] lines = out.toString("US-ASCII").split("\n");
+		for (String line : lines) {
+			if (line.endsWith("\";") && !line.contains(" -> ")) {
+				String id = line.substring(line.indexOf('"') + 1, line.lastIndexOf('"'));
+				sIds.add(id);
+				sExplored.add(FormulaParser.parseFormula(6, id));
+			}
+		}
+		assertEquals(EXPLORED, sIds.size());
+		int edges = 0;
+		for (String line : lines) {
+			int arrow = line.indexOf(" -> ");
+			if (arrow < 0)
+				continue;
+			edges++;
+			String source = line.substring(line.indexOf('"') + 1, arrow - 1);
+			String target = line.substring(arrow + 5, line.lastIndexOf('"'));
+			assertTrue(source, sIds.contains(source));
+			if (sExplored.contains(FormulaParser.parseFormula(6, target))) {
+				assertTrue(target, sIds.contains(target));
+			}
+		}
+		assertTrue(edges > EXPLORED);
+	}
+
+	private static void export(HasseGraphSink sink) throws IOException {
+		HasseDiagram hd = new HasseDiagram(4);
+		hd.exportFormulaAncestors(hd.genBottomFormula(), false, sink);
+	}
+
+	private static int count(String s, String sub) {
+		int n = 0;
+		for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1)) {
+			n++;
+		}
+		return n;
+	}
+}
@@ -0,0 +1,52 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class OffHeapFormulaSetTest {
+
+	@Test
+	public void testZeroKey() {
+		OffHeapFormulaSet set = new OffHeapFormulaSet(2);
+		long[] zero = new long[2];
+		assertFalse(set.contains(zero));
+		assertTrue(set.add(zero));
+		assertFalse(set.add(zero));
+		assertTrue(set.contains(zero));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	public void testGrowthAcrossSegments() {
+		// 128 slots per segment, so that growing spreads the table over many
+		OffHeapFormulaSet set = new OffHeapFormulaSet(2, 128 * 16);
+		int n = 20000;
+		for (int i = 0; i < n; i++) {
+			assertTrue(set.add(key(i)));
+		}
+		for (int i = 0; i < n; i++) {
+			assertFalse(set.add(key(i)));
+		}
+		assertEquals(n, set.size());
+		assertTrue(set.getSegments() > 1);
+		for (int i = 0; i < n; i++) {
+			assertTrue(set.contains(key(i)));
+		}
+		for (int i = n; i < 2 * n; i++) {
+			assertFalse(set.contains(key(i)));
+		}
+	}
+
+	private static long[] key(int i) {
+		// both words used, never all-zero
+		return new long[] { i * 0x9E3779B97F4A7C15L, i + 1 };
+	}
+}
@@ -0,0 +1,96 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks the transversal-based rules (getMaximalIndependent and
+ * hasIndependentSuperset) against the power set graph in small dimensions,
+ * and against their definition in dimensions too large for the graph.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class PowerSetGraphTest {
+	private static final int SAMPLES = 200;
+
+	@Test
+	public void testAgainstGraph() {
+		for (int n = 2; n <= 5; n++) {
+			PowerSetGraph psg = new PowerSetGraph(n);
+			Random random = new Random(n);
+			for (int k = 0; k < SAMPLES; k++) {
+				Set<Clause> sClauses = randomClauses(random, n, 1 + random.nextInt(4), n);
+				Set<Clause> sIndependent = psg.getIndependent(sClauses);
+				assertEquals(sClauses.toString(), psg.getMaximal(sIndependent), psg.getMaximalIndependent(sClauses));
+				Clause cSigma = randomClause(random, n, n);
+				assertEquals(sClauses + " " + cSigma, cSigma.isContainedIn(sIndependent),
+						psg.hasIndependentSuperset(cSigma, sClauses));
+			}
+		}
+	}
+
+	@Test
+	public void testLargeDimension() {
+		int n = 64;
+		PowerSetGraph psg = new PowerSetGraph(n);
+		Random random = new Random(n);
+		for (int k = 0; k < SAMPLES; k++) {
+			// sparse clauses, as in formulas with few regulators per clause
+			Set<Clause> sClauses = randomClauses(random, n, 1 + random.nextInt(4), 4);
+			Set<Clause> sMaximal = psg.getMaximalIndependent(sClauses);
+			assertFalse(sMaximal.isEmpty());
+			for (Clause c : sMaximal) {
+				assertTrue(c.isIndependent(sClauses));
+				// adding any variable makes it contain a clause
+				for (int i = 0; i < n; i++) {
+					if (!c.isSet(i)) {
+						assertTrue(c.cloneAdd(i).contains(sClauses));
+					}
+				}
+				// its independent direct subsets thus have an independent superset
+				for (Clause cSub : psg.getDominatedDirectly(c)) {
+					if (cSub.isIndependent(sClauses)) {
+						assertTrue(psg.hasIndependentSuperset(cSub, sClauses));
+					}
+				}
+			}
+			for (Clause c : sClauses) {
+				// any superset of c contains c
+				assertFalse(psg.hasIndependentSuperset(c, sClauses));
+			}
+		}
+	}
+
+	/**
+	 * @return an antichain of at most size random clauses
+	 */
+	private static Set<Clause> randomClauses(Random random, int n, int size, int maxOrder) {
+		Set<Clause> sClauses = new HashSet<Clause>();
+		for (int tries = 0; sClauses.size() < size && tries < 100; tries++) {
+			Clause c = randomClause(random, n, maxOrder);
+			if (c.isIndependent(sClauses)) {
+				sClauses.add(c);
+			}
+		}
+		return sClauses;
+	}
+
+	private static Clause randomClause(Random random, int n, int maxOrder) {
+		int order = 1 + random.nextInt(maxOrder);
+		BitSet bs = new BitSet(n);
+		while (bs.cardinality() < order) {
+			bs.set(random.nextInt(n));
+		}
+		return new Clause(n, bs).intern();
+	}
+}
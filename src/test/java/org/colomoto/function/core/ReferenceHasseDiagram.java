@@ -0,0 +1,155 @@
+package org.colomoto.function.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reference (brute-force) Hasse diagram, used to validate HasseDiagram. It
+ * enumerates all the monotone Boolean functions of n variables as truth tables
+ * (see {@link DownSetCounter}), and computes the covering relation by
+ * exhaustive comparison. It is thus limited to small dimensions (n <= 5).
+ *
+ * Constant functions are never considered. If not degenerated, only the
+ * functions depending on all the variables (i.e. consistent formulas) are
+ * considered, and covering is taken within this subset.
+ *
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+class ReferenceHasseDiagram {
+	public static final int MAX_VARS = 5;
+
+	private int nvars;
+	private List<Long> lFunctions;
+	private Map<Long, List<Long>> mParents;
+	private Map<Long, List<Long>> mChildren;
+
+	public ReferenceHasseDiagram(int nvars, boolean degenerated) {
+		if (nvars > MAX_VARS) {
+			throw new IllegalArgumentException("Reference diagram supports up to " + MAX_VARS + " variables");
+		}
+		this.nvars = nvars;
+		long all = (1L << (1 << nvars)) - 1;
+		this.lFunctions = new ArrayList<Long>();
+		for (long table : DownSetCounter.listBelow(nvars, all)) {
+			if (table != 0L && table != all && (degenerated || this.dependsOnAll(table))) {
+				this.lFunctions.add(table);
+			}
+		}
+		// by increasing number of true points, so that any function strictly
+		// between g and h is visited before h
+		Collections.sort(this.lFunctions, new Comparator<Long>() {
+			@Override
+			public int compare(Long t1, Long t2) {
+				return Long.bitCount(t1) - Long.bitCount(t2);
+			}
+		});
+		this.mParents = new HashMap<Long, List<Long>>();
+		this.mChildren = new HashMap<Long, List<Long>>();
+		for (long g : this.lFunctions) {
+			this.mParents.put(g, new ArrayList<Long>());
+			this.mChildren.put(g, new ArrayList<Long>());
+		}
+		for (long g : this.lFunctions) {
+			List<Long> lCovers = this.mParents.get(g);
+			for (long h : this.lFunctions) {
+				if (h == g || (g & ~h) != 0L)
+					continue;
+				boolean bCover = true;
+				for (long c : lCovers) {
+					if ((c & ~h) == 0L) {
+						bCover = false;
+						break;
+					}
+				}
+				if (bCover) {
+					lCovers.add(h);
+					this.mChildren.get(h).add(g);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of functions in the diagram
+	 */
+	public int getSize() {
+		return this.lFunctions.size();
+	}
+
+	public List<Formula> getFormulas() {
+		List<Formula> lFormulas = new ArrayList<Formula>();
+		for (long table : this.lFunctions) {
+			lFormulas.add(this.toFormula(table));
+		}
+		return lFormulas;
+	}
+
+	public Set<Formula> getFormulaParents(Formula f) {
+		return this.toFormulas(this.mParents.get(DownSetCounter.truthTable(this.nvars, f)));
+	}
+
+	public Set<Formula> getFormulaChildren(Formula f) {
+		return this.toFormulas(this.mChildren.get(DownSetCounter.truthTable(this.nvars, f)));
+	}
+
+	private Set<Formula> toFormulas(List<Long> lTables) {
+		Set<Formula> sFormulas = new HashSet<Formula>();
+		if (lTables != null) {
+			for (long table : lTables) {
+				sFormulas.add(this.toFormula(table));
+			}
+		}
+		return sFormulas;
+	}
+
+	/**
+	 * The clauses of a function are its minimal true points.
+	 *
+	 * @param table
+	 * @return
+	 */
+	private Formula toFormula(long table) {
+		Set<Clause> sClauses = new HashSet<Clause>();
+		for (int x = 0; x < (1 << this.nvars); x++) {
+			if ((table & (1L << x)) == 0)
+				continue;
+			boolean bMinimal = true;
+			for (int i = 0; i < this.nvars && bMinimal; i++) {
+				if ((x & (1 << i)) != 0 && (table & (1L << (x & ~(1 << i)))) != 0)
+					bMinimal = false;
+			}
+			if (bMinimal) {
+				BitSet bs = new BitSet(this.nvars);
+				for (int i = 0; i < this.nvars; i++) {
+					if ((x & (1 << i)) != 0)
+						bs.set(i);
+				}
+				sClauses.add(new Clause(this.nvars, bs));
+			}
+		}
+		return new Formula(this.nvars, sClauses);
+	}
+
+	private boolean dependsOnAll(long table) {
+		for (int i = 0; i < this.nvars; i++) {
+			boolean bDepends = false;
+			for (int x = 0; x < (1 << this.nvars) && !bDepends; x++) {
+				if ((x & (1 << i)) == 0) {
+					bDepends = ((table >>> x) & 1L) != ((table >>> (x | (1 << i))) & 1L);
+				}
+			}
+			if (!bDepends)
+				return false;
+		}
+		return true;
+	}
+}
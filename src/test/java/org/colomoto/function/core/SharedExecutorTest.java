@@ -0,0 +1,68 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class SharedExecutorTest {
+
+	@Test
+	public void testGetAll() {
+		SharedExecutor executor = new SharedExecutor("test");
+		List<Future<Integer>> lFutures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < 4; i++) {
+			final int value = i;
+			lFutures.add(executor.get().submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return value;
+				}
+			}));
+		}
+		assertEquals(Arrays.asList(0, 1, 2, 3), SharedExecutor.getAll(lFutures, "test"));
+	}
+
+	@Test
+	public void testInterruptCancels() throws Exception {
+		SharedExecutor executor = new SharedExecutor("test");
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch never = new CountDownLatch(1);
+		List<Future<Void>> lFutures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < 2 * Runtime.getRuntime().availableProcessors(); i++) {
+			lFutures.add(executor.get().submit(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					started.countDown();
+					never.await();
+					return null;
+				}
+			}));
+		}
+		started.await();
+		Thread.currentThread().interrupt();
+		try {
+			SharedExecutor.getAll(lFutures, "test");
+			fail();
+		} catch (IllegalStateException e) {
+			// the interrupted status is kept for the caller
+			assertTrue(Thread.interrupted());
+		}
+		for (Future<Void> future : lFutures) {
+			assertTrue(future.isCancelled());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package org.colomoto.function.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Pedro T. Monteiro
+ * @author Jose' R. Cury
+ *
+ */
+public class SpillingFormulaQueueTest {
+
+	@Test
+	public void testSpillAndUnspill() throws IOException {
+		// room for 4 keys in memory
+		SpillingFormulaQueue queue = new SpillingFormulaQueue(1, 32, null);
+		try {
+			int n = 1000;
+			for (long i = 0; i < n; i++) {
+				queue.push(new long[] { i });
+			}
+			assertEquals(n, queue.size());
+			assertTrue(queue.getSpilled() > 0);
+
+			Set<Long> sPopped = new HashSet<Long>();
+			long[] key = new long[1];
+			while (queue.pop(key)) {
+				assertTrue(sPopped.add(key[0]));
+			}
+			assertEquals(n, sPopped.size());
+			assertTrue(queue.isEmpty());
+			assertEquals(0, queue.getSpilled());
+		} finally {
+			queue.close();
+		}
+	}
+
+	@Test
+	public void testInterleaved() throws IOException {
+		SpillingFormulaQueue queue = new SpillingFormulaQueue(2, 48, null);
+		try {
+			Set<Long> sPushed = new HashSet<Long>();
+			Set<Long> sPopped = new HashSet<Long>();
+			long[] key = new long[2];
+			long next = 0;
+			for (int round = 0; round < 200; round++) {
+				for (int i = 0; i < 5; i++, next++) {
+					queue.push(new long[] { next, ~next });
+					sPushed.add(next);
+				}
+				for (int i = 0; i < 3 && queue.pop(key); i++) {
+					assertEquals(~key[0], key[1]);
+					assertTrue(sPopped.add(key[0]));
+				}
+			}
+			while (queue.pop(key)) {
+				assertTrue(sPopped.add(key[0]));
+			}
+			assertEquals(sPushed, sPopped);
+			assertFalse(queue.pop(key));
+		} finally {
+			queue.close();
+		}
+	}
+}